@@ -0,0 +1,167 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.jndi.SimpleNamingContextBuilder;
+
+/**
+ * Benchmark for the query rewriting of the {@link JdbcAutoPhrasingQParserPlugin}.
+ *
+ * Run with <code>mvn -P benchmark test-compile exec:exec</code>.
+ * Allocations are reported by the gc profiler, which is enabled by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcAutoPhrasingQParserPluginBenchmark {
+    /**
+     * Number of distinct queries per run.
+     */
+    private static final int QUERIES = 1024;
+
+    /**
+     * Number of phrases in the dictionary.
+     */
+    @Param({ "1000", "100000", "1000000" })
+    public int phrases;
+
+    /**
+     * Query mix: Plain keywords or keywords with query syntax (fields, operators, ranges, quotes, units).
+     */
+    @Param({ "keywords", "syntax" })
+    public String mix;
+
+    /**
+     * Embedded database.
+     */
+    private EmbeddedDatabase database;
+
+    /**
+     * Plugin under test.
+     */
+    private JdbcAutoPhrasingQParserPlugin plugin;
+
+    /**
+     * Queries.
+     */
+    private String[] queries;
+
+    /**
+     * Normalized queries, input for {@link JdbcAutoPhrasingQParserPlugin#autophrase(String)}.
+     */
+    private String[] normalizedQueries;
+
+    /**
+     * Index of the next query.
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+        JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("create table phrases(phrase varchar(256))");
+        template.update("insert into phrases(phrase) select concat('brand', x, ' model', x) from system_range(1, ?)", phrases);
+
+        SimpleNamingContextBuilder builder = SimpleNamingContextBuilder.emptyActivatedContextBuilder();
+        builder.bind("java:comp/env/dataSource", database);
+
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select phrase from phrases");
+        // Measure the rewriting, not the cache.
+        args.add(JdbcAutoPhrasingQParserPlugin.CACHE_SIZE, "0");
+        plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+
+        Random random = new Random(42);
+        AutoPhrasingQueryNormalizer normalizer = new AutoPhrasingQueryNormalizer(false);
+        queries = new String[QUERIES];
+        normalizedQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = "syntax".equals(mix) ? syntaxQuery(random) : keywordQuery(random);
+            normalizedQueries[i] = normalizer.normalize(queries[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public String filter() {
+        return plugin.filter(queries[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public String autophrase() throws IOException {
+        return plugin.autophrase(normalizedQueries[next++ & (QUERIES - 1)]);
+    }
+
+    /**
+     * Query of 1 to 4 keywords, containing a phrase in half of the cases.
+     */
+    private String keywordQuery(Random random) {
+        StringBuilder query = new StringBuilder();
+        if (random.nextBoolean()) {
+            query.append(phrase(random));
+        }
+        for (int words = random.nextInt(3) + 1; words > 0; words--) {
+            query.append(query.length() > 0 ? " " : "").append("word").append(random.nextInt(10000));
+        }
+        return query.toString();
+    }
+
+    /**
+     * Query with query syntax around keywords.
+     */
+    private String syntaxQuery(Random random) {
+        String keywords = keywordQuery(random);
+        switch (random.nextInt(5)) {
+            case 0:
+                return "+" + phrase(random) + " -used";
+            case 1:
+                return "title:(" + keywords + " OR " + phrase(random) + ")";
+            case 2:
+                return "\"" + phrase(random) + "\" " + (random.nextInt(20) + 1) + " lbs";
+            case 3:
+                return "price:[10 TO 20] AND " + keywords;
+            default:
+                return keywords + " " + (random.nextInt(50) + 1) + " inches";
+        }
+    }
+
+    /**
+     * Random phrase of the dictionary.
+     */
+    private String phrase(Random random) {
+        int i = random.nextInt(phrases) + 1;
+        return "brand" + i + " model" + i;
+    }
+}
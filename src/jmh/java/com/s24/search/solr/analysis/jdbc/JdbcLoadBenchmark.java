@@ -0,0 +1,232 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+import org.apache.lucene.util.Version;
+import org.noggit.JSONUtil;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.jndi.SimpleNamingContextBuilder;
+
+/**
+ * Load benchmark for the JDBC filter factories: Generates synthetic tables in an embedded H2 database
+ * and measures loading them via {@link SimpleJdbcReader} and {@link JdbcResourceLoader} ("read")
+ * and informing the filter factories with them ("inform").
+ *
+ * For each phase wall time, allocated bytes and peak heap are reported as JSON.
+ *
+ * Run with <code>mvn -P benchmark test-compile exec:exec -Dbenchmark.main=com.s24.search.solr.analysis.jdbc.JdbcLoadBenchmark
+ * -Dbenchmark.args="rows=10000,1000000 tables=synonyms,stopwords fetchSize=1000 out=target/load.json"</code>.
+ */
+public class JdbcLoadBenchmark {
+   /**
+    * SQL to generate the tables. The only parameter is the number of rows.
+    */
+   private static final Map<String, String> TABLES = new LinkedHashMap<>();
+
+   static {
+      TABLES.put("synonyms", "select concat('a', x, ',b', x, ' => c', x) from system_range(1, ?)");
+      TABLES.put("stopwords", "select concat('stop', x) from system_range(1, ?)");
+      TABLES.put("keepwords", "select concat('keep', x) from system_range(1, ?)");
+      TABLES.put("phrases", "select concat('brand', x, ' model', x) from system_range(1, ?)");
+   }
+
+   /**
+    * Thread MX bean for allocated bytes.
+    */
+   private static final com.sun.management.ThreadMXBean threads =
+         (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+   /**
+    * Run the benchmark.
+    *
+    * @param args
+    *           Options: <code>rows=</code> comma separated numbers of rows (default 10000,100000,1000000),
+    *           <code>tables=</code> comma separated tables (default all), <code>fetchSize=</code> fetch size
+    *           (default 0, no streaming), <code>out=</code> file for the JSON result (default stdout).
+    */
+   public static void main(String[] args) throws Exception {
+      Map<String, String> options = new HashMap<>();
+      options.put("rows", "10000,100000,1000000");
+      options.put("tables", String.join(",", TABLES.keySet()));
+      options.put("fetchSize", "0");
+      for (String arg : args) {
+         String[] option = arg.split("=", 2);
+         options.put(option[0], option.length > 1 ? option[1] : "");
+      }
+
+      EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+      SimpleNamingContextBuilder.emptyActivatedContextBuilder().bind("java:comp/env/dataSource", database);
+
+      List<Object> results = new ArrayList<>();
+      try {
+         for (String rows : options.get("rows").split(",")) {
+            for (String table : options.get("tables").split(",")) {
+               results.add(run(database, table, Integer.parseInt(rows), options.get("fetchSize")));
+            }
+         }
+      } finally {
+         database.shutdown();
+      }
+
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("version", JdbcLoadBenchmark.class.getPackage().getImplementationVersion());
+      result.put("java", System.getProperty("java.version"));
+      result.put("maxHeap", Runtime.getRuntime().maxMemory());
+      result.put("fetchSize", Integer.parseInt(options.get("fetchSize")));
+      result.put("results", results);
+
+      String json = JSONUtil.toJSON(result);
+      if (options.containsKey("out")) {
+         Files.write(Paths.get(options.get("out")), json.getBytes(StandardCharsets.UTF_8));
+      } else {
+         System.out.println(json);
+      }
+   }
+
+   /**
+    * Benchmark one table.
+    *
+    * @param database
+    *           Database.
+    * @param table
+    *           Table.
+    * @param rows
+    *           Number of rows.
+    * @param fetchSize
+    *           Fetch size.
+    */
+   private static Map<String, Object> run(EmbeddedDatabase database, String table, int rows, String fetchSize)
+         throws Exception {
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("table", table);
+      result.put("rows", rows);
+
+      JdbcTemplate template = new JdbcTemplate(database);
+      result.put("generate", measure(() -> {
+         template.execute("drop table if exists " + table);
+         template.execute("create table " + table + "(line varchar(256))");
+         return (long) template.update("insert into " + table + "(line) " + TABLES.get(table), rows);
+      }));
+
+      ResourceLoader loader = new ClasspathResourceLoader();
+      result.put("read", measure(() -> {
+         JdbcReader reader = JdbcReaderFactory.createFromSolrParams(args(table, fetchSize), null);
+         long bytes = 0;
+         byte[] buffer = new byte[8192];
+         try (InputStream input = new JdbcResourceLoader(loader, reader, StandardCharsets.UTF_8)
+               .openResource(JdbcResourceLoader.DATABASE)) {
+            for (int read; (read = input.read(buffer)) >= 0;) {
+               bytes += read;
+            }
+         }
+         return bytes;
+      }));
+
+      result.put("inform", measure(() -> {
+         ResourceLoaderAware factory = factory(table, args(table, fetchSize));
+         factory.inform(loader);
+         return (long) rows;
+      }));
+
+      template.execute("drop table " + table);
+      return result;
+   }
+
+   /**
+    * Configuration of readers and filter factories.
+    *
+    * @param table
+    *           Table.
+    * @param fetchSize
+    *           Fetch size.
+    */
+   private static Map<String, String> args(String table, String fetchSize) {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_4_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select line from " + table);
+      if (!"0".equals(fetchSize)) {
+         args.put(JdbcReaderFactoryParams.FETCH_SIZE, fetchSize);
+      }
+      return args;
+   }
+
+   /**
+    * Create filter factory for table.
+    *
+    * @param table
+    *           Table.
+    * @param args
+    *           Configuration.
+    */
+   private static ResourceLoaderAware factory(String table, Map<String, String> args) {
+      switch (table) {
+         case "synonyms":
+            return new JdbcSynonymFilterFactory(args);
+         case "stopwords":
+            return new JdbcStopFilterFactory(args);
+         case "keepwords":
+            return new JdbcKeepWordFilterFactory(args);
+         case "phrases":
+            return new JdbcAutoPhrasingTokenFilterFactory(args);
+         default:
+            throw new IllegalArgumentException("Unknown table " + table + ".");
+      }
+   }
+
+   /**
+    * Measure wall time, allocated bytes and peak heap of a phase.
+    *
+    * @param phase
+    *           Phase. Returns the number of processed items.
+    */
+   private static Map<String, Object> measure(Callable<Long> phase) throws Exception {
+      List<MemoryPoolMXBean> pools = new ArrayList<>();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+         if (pool.getType() == MemoryType.HEAP) {
+            pools.add(pool);
+         }
+      }
+
+      System.gc();
+      pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+      long threadId = Thread.currentThread().getId();
+      long allocated = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+
+      long items = phase.call();
+
+      long millis = (System.nanoTime() - start) / 1000000;
+      allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+      long peakHeap = 0;
+      for (MemoryPoolMXBean pool : pools) {
+         peakHeap += pool.getPeakUsage().getUsed();
+      }
+
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("millis", millis);
+      result.put("allocatedBytes", allocated);
+      result.put("peakHeapBytes", peakHeap);
+      result.put("items", items);
+      return result;
+   }
+}
@@ -0,0 +1,68 @@
+package com.s24.search.solr;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.http.client.HttpClient;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.core.SolrInfoMBean;
+import org.apache.solr.handler.component.HttpShardHandler;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.handler.component.ShardRequest;
+import org.apache.solr.request.SolrQueryRequest;
+
+/**
+ * {@link HttpShardHandler} which sets the parameters, which plugins have put into the context of the request
+ * under {@link ConfiguringHttpShardHandlerFactory#SHARD_PARAMS}, on all shard requests.
+ *
+ * It registers its factory in the info registry of the cores distributing requests,
+ * so the statistics of the replicas are available via the mbeans handler and JMX.
+ */
+class ConfiguringHttpShardHandler extends HttpShardHandler {
+   /**
+    * Factory.
+    */
+   private final ConfiguringHttpShardHandlerFactory factory;
+
+   /**
+    * Request distributed by this shard handler. Null, before {@link #prepDistributed(ResponseBuilder)}.
+    */
+   private SolrQueryRequest req;
+
+   /**
+    * Constructor.
+    *
+    * @param factory Factory.
+    * @param httpClient Http client.
+    */
+   ConfiguringHttpShardHandler(ConfiguringHttpShardHandlerFactory factory, HttpClient httpClient) {
+      super(factory, httpClient);
+      this.factory = factory;
+   }
+
+   @Override
+   public void prepDistributed(ResponseBuilder rb) {
+      this.req = rb.req;
+      Map<String, SolrInfoMBean> registry = rb.req.getCore().getInfoRegistry();
+      if (!registry.containsKey(factory.getName())) {
+         registry.put(factory.getName(), factory);
+      }
+      super.prepDistributed(rb);
+   }
+
+   @Override
+   public void submit(ShardRequest sreq, String shard, ModifiableSolrParams params) {
+      // The shard parameters are put into the context while preparing the components, so look them up lazily.
+      SolrParams shardParams = req != null ?
+            (SolrParams) req.getContext().get(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS) : null;
+      if (shardParams != null) {
+         for (Iterator<String> names = shardParams.getParameterNamesIterator(); names.hasNext();) {
+            String name = names.next();
+            params.set(name, shardParams.getParams(name));
+         }
+      }
+
+      super.submit(sreq, shard, params);
+   }
+}
@@ -1,18 +1,36 @@
 package com.s24.search.solr;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.BeanUtilsBean2;
+import org.apache.http.client.HttpClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.PluginInfo;
+import org.apache.solr.core.SolrInfoMBean;
 import org.apache.solr.handler.component.HttpShardHandlerFactory;
+import org.apache.solr.handler.component.ShardHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,24 +56,94 @@ import com.google.common.annotations.VisibleForTesting;
  * </pre>
  *
  * The defined beans can be retrieved via {@link ConfiguringHttpShardHandlerFactory#lookUp(String, Class)} from plugins.
+ * When the factory is closed, its beans are unregistered and closed, if they are {@link AutoCloseable}.
+ *
+ * Plugins may put {@link SolrParams} into the context of a request under {@link #SHARD_PARAMS}.
+ * They are set on all shard requests of the request, e.g. to forward a query which has been rewritten on the coordinator.
+ *
+ * Requests to shards with several replicas can be hedged: If a replica has not responded within the
+ * {@value #HEDGE_PERCENTILE} of the recent latencies of its shard, the request is sent to another replica as well.
+ * The first response wins, the response of the other request is discarded. Hedged requests use at most
+ * {@value #HEDGE_MAX_THREADS} threads, beyond that requests are not hedged.
+ *
+ * Latencies, errors and requests in flight are recorded per replica and reported via the mbeans handler of the cores
+ * distributing requests. With {@value #ADAPTIVE_REPLICA_SELECTION}, replicas are preferred by these statistics
+ * instead of being chosen randomly.
  */
 @SuppressWarnings("unused") // API
-public class ConfiguringHttpShardHandlerFactory extends HttpShardHandlerFactory {
+public class ConfiguringHttpShardHandlerFactory extends HttpShardHandlerFactory implements SolrInfoMBean {
    /**
     * Logger.
     */
    private static final Logger log = LoggerFactory.getLogger(ConfiguringHttpShardHandlerFactory.class);
 
+   /**
+    * Key of the {@link SolrParams} in the context of a request, which are set on all of its shard requests.
+    */
+   public static final String SHARD_PARAMS = ConfiguringHttpShardHandlerFactory.class.getName() + ".shardParams";
+
+   /**
+    * Parameter: Percentile of the recent latencies of a shard after which requests are hedged, e.g. 95.
+    * If not set, requests are not hedged.
+    */
+   public static final String HEDGE_PERCENTILE = "hedgePercentile";
+
+   /**
+    * Parameter: Minimum delay in ms before hedging a request. Default 10.
+    */
+   public static final String HEDGE_MIN_DELAY = "hedgeMinDelay";
+
+   /**
+    * Parameter: Maximum number of threads for hedged requests. Default 100.
+    */
+   public static final String HEDGE_MAX_THREADS = "hedgeMaxThreads";
+
+   /**
+    * Parameter: Length of the window of recent latencies in ms. Default 60000.
+    */
+   public static final String LATENCY_WINDOW = "latencyWindow";
+
+   /**
+    * Parameter: Prefer replicas with lower recent latencies, fewer errors and fewer requests in flight? Default false,
+    * which chooses replicas randomly.
+    */
+   public static final String ADAPTIVE_REPLICA_SELECTION = "adaptiveReplicaSelection";
+
    /**
     * All data sources by name.
     */
    private static final Map<String, Object> beans = new ConcurrentHashMap<>();
 
+   /**
+    * Names of the beans registered by this factory.
+    */
+   private final List<String> beanNames = new ArrayList<>();
+
    /**
     * Reflection helper.
     */
    private final BeanUtilsBean utils = new BeanUtilsBean2();
 
+   /**
+    * Hedger for requests to replicas. Null, if requests are not hedged.
+    */
+   private ShardRequestHedger hedger;
+
+   /**
+    * Length of the window of recent latencies in ms.
+    */
+   private long latencyWindow = 60000;
+
+   /**
+    * Prefer replicas with lower recent latencies, fewer errors and fewer requests in flight?
+    */
+   private boolean adaptiveReplicaSelection = false;
+
+   /**
+    * Statistics of the requests by replica URL.
+    */
+   private final ConcurrentMap<String, ReplicaStatistics> replicas = new ConcurrentHashMap<>();
+
    /**
     * Look up bean by name.
     *
@@ -98,6 +186,11 @@ public class ConfiguringHttpShardHandlerFactory extends HttpShardHandlerFactory
       beans.clear();
    }
 
+   @Override
+   public ShardHandler getShardHandler(HttpClient httpClient) {
+      return new ConfiguringHttpShardHandler(this, httpClient);
+   }
+
    @Override
    public void init(PluginInfo info) {
       NamedList<?> args = (NamedList<?>) info.initArgs;
@@ -110,9 +203,192 @@ public class ConfiguringHttpShardHandlerFactory extends HttpShardHandlerFactory
          }
       }
 
+      SolrParams params = SolrParams.toSolrParams(args);
+      latencyWindow = params.getLong(LATENCY_WINDOW, 60000);
+      checkArgument(latencyWindow > 0, "The latency window has to be positive.");
+      adaptiveReplicaSelection = params.getBool(ADAPTIVE_REPLICA_SELECTION, false);
+      Double hedgePercentile = params.getDouble(HEDGE_PERCENTILE);
+      if (hedgePercentile != null) {
+         hedger = new ShardRequestHedger(hedgePercentile, params.getLong(HEDGE_MIN_DELAY, 10), latencyWindow,
+               params.getInt(HEDGE_MAX_THREADS, 100));
+         log.info("Hedging requests to replicas after the {} percentile of their recent latencies.", hedgePercentile);
+      }
+
       super.init(info);
    }
 
+   @Override
+   public LBHttpSolrClient.Rsp makeLoadBalancedRequest(QueryRequest req, List<String> urls)
+         throws SolrServerException, IOException {
+      if (hedger == null) {
+         return trackedRequest(req, urls);
+      }
+
+      return hedger.request(urls, replicas -> trackedRequest(req, replicas));
+   }
+
+   /**
+    * Load balanced request, recording the statistics of the replicas.
+    * The load balancer tries the replicas in order, so the replicas before the responding one failed.
+    *
+    * @param req Request.
+    * @param urls URLs of the replicas, in the preferred order.
+    */
+   private LBHttpSolrClient.Rsp trackedRequest(QueryRequest req, List<String> urls)
+         throws SolrServerException, IOException {
+      ReplicaStatistics first = getReplicaStatistics(urls.get(0));
+      first.started();
+      long start = System.nanoTime();
+      try {
+         LBHttpSolrClient.Rsp rsp = super.makeLoadBalancedRequest(req, urls);
+         int responding = Math.max(indexOf(urls, rsp.getServer()), 0);
+         for (int i = 0; i < responding; i++) {
+            getReplicaStatistics(urls.get(i)).failed();
+         }
+         getReplicaStatistics(urls.get(responding)).succeeded(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+         return rsp;
+
+      } catch (SolrServerException | IOException e) {
+         // No replica responded. Other exceptions, e.g. for bad requests, are not caused by the replicas.
+         for (String url : urls) {
+            getReplicaStatistics(url).failed();
+         }
+         throw e;
+
+      } finally {
+         first.finished();
+      }
+   }
+
+   /**
+    * Index of the responding replica. The load balancer strips trailing slashes from the URLs of the replicas.
+    *
+    * @param urls URLs of the replicas.
+    * @param server URL of the responding replica.
+    * @return Index of the replica, -1 if not found.
+    */
+   private static int indexOf(List<String> urls, String server) {
+      if (server == null) {
+         return -1;
+      }
+      String normalized = stripTrailingSlash(server);
+      for (int i = 0; i < urls.size(); i++) {
+         if (stripTrailingSlash(urls.get(i)).equals(normalized)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Strip a trailing slash from a URL.
+    */
+   private static String stripTrailingSlash(String url) {
+      return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+   }
+
+   /**
+    * Order the replicas of a shard: Randomly or, with adaptive replica selection, by their scores.
+    */
+   @Override
+   public List<String> makeURLList(String shard) {
+      List<String> urls = super.makeURLList(shard);
+      if (!adaptiveReplicaSelection || urls.size() <= 1) {
+         return urls;
+      }
+
+      // Score once, because the statistics change concurrently. Sorting is stable, so ties keep the random order.
+      Map<String, Double> scores = new HashMap<>();
+      for (String url : urls) {
+         scores.put(url, getReplicaStatistics(url).score());
+      }
+      List<String> result = new ArrayList<>(urls);
+      result.sort(Comparator.comparing(scores::get));
+      return result;
+   }
+
+   /**
+    * Statistics of the requests to a replica.
+    *
+    * @param url URL of the replica.
+    */
+   @VisibleForTesting
+   ReplicaStatistics getReplicaStatistics(String url) {
+      return replicas.computeIfAbsent(url, key -> new ReplicaStatistics(latencyWindow));
+   }
+
+   @Override
+   public String getName() {
+      return getClass().getName();
+   }
+
+   @Override
+   public String getVersion() {
+      return getClass().getPackage().getImplementationVersion();
+   }
+
+   @Override
+   public String getDescription() {
+      return "Shard handler factory with beans, hedged requests and adaptive replica selection";
+   }
+
+   @Override
+   public Category getCategory() {
+      return Category.OTHER;
+   }
+
+   @Override
+   public String getSource() {
+      return null;
+   }
+
+   @Override
+   public URL[] getDocs() {
+      return null;
+   }
+
+   /**
+    * Statistics of the requests by replica URL.
+    */
+   @Override
+   public NamedList getStatistics() {
+      NamedList<Object> statistics = new SimpleOrderedMap<>();
+      for (Entry<String, ReplicaStatistics> replica : new TreeMap<>(replicas).entrySet()) {
+         statistics.add(replica.getKey(), replica.getValue().toNamedList());
+      }
+      return statistics;
+   }
+
+   @Override
+   public void close() {
+      try {
+         if (hedger != null) {
+            hedger.close();
+         }
+         closeBeans();
+      } finally {
+         super.close();
+      }
+   }
+
+   /**
+    * Unregister the beans of this factory and close them, if they are {@link AutoCloseable}.
+    */
+   private void closeBeans() {
+      for (String beanName : beanNames) {
+         Object bean = beans.remove(beanName);
+         if (bean instanceof AutoCloseable) {
+            try {
+               ((AutoCloseable) bean).close();
+               log.info("Closed bean {}.", beanName);
+            } catch (Exception e) {
+               log.warn("Failed to close bean {}: {}.", beanName, e.getMessage());
+            }
+         }
+      }
+      beanNames.clear();
+   }
+
    /**
     * Create, configure and register bean.
     *
@@ -128,6 +404,7 @@ public class ConfiguringHttpShardHandlerFactory extends HttpShardHandlerFactory
       if (bean != null) {
          Object removed = beans.put(beanName, bean);
          checkState(removed == null, beanName + " has been defined twice.");
+         beanNames.add(beanName);
          log.info("Successfully registered bean {}.", beanName);
       }
    }
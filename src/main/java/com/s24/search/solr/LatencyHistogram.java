@@ -0,0 +1,166 @@
+package com.s24.search.solr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of recent latencies in ms, in the style of HdrHistogram:
+ * The buckets are exact up to {@value #LINEAR} ms and have a relative precision of 1/{@value #SUB_BUCKETS} above.
+ * Recording is a single atomic increment.
+ *
+ * Just recent latencies are kept: The histogram records into the current window and evaluates the current
+ * and the previous window. Windows are rotated by the first thread noticing that the current window has ended.
+ */
+final class LatencyHistogram {
+   /**
+    * Number of bits of the sub buckets of each power of 2.
+    */
+   private static final int SUB_BUCKET_BITS = 3;
+
+   /**
+    * Number of sub buckets of each power of 2.
+    */
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+   /**
+    * Latencies below this limit have exact buckets.
+    */
+   private static final int LINEAR = 2 * SUB_BUCKETS;
+
+   /**
+    * Highest trackable latency in ms. Higher latencies are recorded as this one.
+    */
+   private static final long MAX_LATENCY = (1L << 32) - 1;
+
+   /**
+    * Number of buckets.
+    */
+   private static final int BUCKETS = index(MAX_LATENCY) + 1;
+
+   /**
+    * Length of a window in ns.
+    */
+   private final long window;
+
+   /**
+    * End of the current window in ns, see {@link System#nanoTime()}.
+    */
+   private final AtomicLong windowEnd;
+
+   /**
+    * Counts of the current window.
+    */
+   private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+
+   /**
+    * Counts of the previous window.
+    */
+   private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+
+   /**
+    * Constructor.
+    *
+    * @param window Length of a window in ms.
+    */
+   LatencyHistogram(long window) {
+      checkArgument(window > 0, "The window has to be positive.");
+      this.window = TimeUnit.MILLISECONDS.toNanos(window);
+      this.windowEnd = new AtomicLong(System.nanoTime() + this.window);
+   }
+
+   /**
+    * Record a latency.
+    *
+    * @param latency Latency in ms.
+    */
+   void record(long latency) {
+      rotate();
+      current.incrementAndGet(index(Math.min(latency, MAX_LATENCY)));
+   }
+
+   /**
+    * Number of recent latencies.
+    */
+   long getCount() {
+      rotate();
+      AtomicLongArray current = this.current;
+      AtomicLongArray previous = this.previous;
+      long count = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         count += current.get(i) + previous.get(i);
+      }
+      return count;
+   }
+
+   /**
+    * Recent latency at a percentile.
+    *
+    * @param percentile Percentile, e.g. 95.
+    * @param minCount Minimum number of recent latencies needed for a meaningful result.
+    * @return Highest latency in ms of the bucket of the percentile. -1, if there are less latencies than needed.
+    */
+   long getValueAtPercentile(double percentile, long minCount) {
+      rotate();
+      AtomicLongArray current = this.current;
+      AtomicLongArray previous = this.previous;
+      long[] counts = new long[BUCKETS];
+      long count = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         counts[i] = current.get(i) + previous.get(i);
+         count += counts[i];
+      }
+      if (count == 0 || count < minCount) {
+         return -1;
+      }
+
+      long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         seen += counts[i];
+         if (seen >= rank) {
+            return highestValue(i);
+         }
+      }
+      return MAX_LATENCY;
+   }
+
+   /**
+    * Start a new window, if the current one has ended.
+    */
+   private void rotate() {
+      long now = System.nanoTime();
+      long end = windowEnd.get();
+      if (now - end >= 0 && windowEnd.compareAndSet(end, now + window)) {
+         // After an idle window, the former latencies are no longer recent.
+         previous = now - end < window ? current : new AtomicLongArray(BUCKETS);
+         current = new AtomicLongArray(BUCKETS);
+      }
+   }
+
+   /**
+    * Index of the bucket of a latency.
+    */
+   private static int index(long latency) {
+      if (latency < LINEAR) {
+         return (int) Math.max(latency, 0);
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(latency);
+      int subBucket = (int) (latency >>> (exponent - SUB_BUCKET_BITS));
+      return LINEAR + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket - SUB_BUCKETS;
+   }
+
+   /**
+    * Highest latency of a bucket.
+    */
+   private static long highestValue(int index) {
+      if (index < LINEAR) {
+         return index;
+      }
+      int exponent = (index - LINEAR) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+      long subBucket = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+      return ((subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+   }
+}
@@ -0,0 +1,147 @@
+package com.s24.search.solr;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Lock free statistics of the requests to a replica: Recent latencies, recent error rate and in flight requests.
+ * They score the replica for adaptive replica selection.
+ */
+class ReplicaStatistics {
+   /**
+    * Weight of the latest request in the recent error rate.
+    */
+   private static final double ERROR_RATE_WEIGHT = 0.05;
+
+   /**
+    * Highest recent error rate considered for scoring, so failing replicas keep a finite score.
+    */
+   private static final double MAX_ERROR_RATE = 0.99;
+
+   /**
+    * Recent latencies of successful requests.
+    */
+   private final LatencyHistogram latencies;
+
+   /**
+    * Number of requests.
+    */
+   private final LongAdder requests = new LongAdder();
+
+   /**
+    * Number of failed requests.
+    */
+   private final LongAdder errors = new LongAdder();
+
+   /**
+    * Number of requests in flight.
+    */
+   private final AtomicInteger inFlight = new AtomicInteger();
+
+   /**
+    * Recent error rate as exponentially weighted moving average, stored as bits of a double.
+    */
+   private final AtomicLong errorRate = new AtomicLong(Double.doubleToLongBits(0));
+
+   /**
+    * Constructor.
+    *
+    * @param window Length of the window of recent latencies in ms.
+    */
+   ReplicaStatistics(long window) {
+      this.latencies = new LatencyHistogram(window);
+   }
+
+   /**
+    * A request to the replica has been started.
+    */
+   void started() {
+      inFlight.incrementAndGet();
+   }
+
+   /**
+    * A request to the replica has been finished.
+    */
+   void finished() {
+      inFlight.decrementAndGet();
+   }
+
+   /**
+    * A request to the replica succeeded.
+    *
+    * @param latency Latency in ms.
+    */
+   void succeeded(long latency) {
+      requests.increment();
+      latencies.record(latency);
+      updateErrorRate(0);
+   }
+
+   /**
+    * A request to the replica failed.
+    */
+   void failed() {
+      requests.increment();
+      errors.increment();
+      updateErrorRate(1);
+   }
+
+   /**
+    * Update the recent error rate.
+    *
+    * @param error 1 for a failed request, 0 for a successful one.
+    */
+   private void updateErrorRate(double error) {
+      long current;
+      long updated;
+      do {
+         current = errorRate.get();
+         double rate = Double.longBitsToDouble(current);
+         updated = Double.doubleToLongBits(rate + ERROR_RATE_WEIGHT * (error - rate));
+      } while (!errorRate.compareAndSet(current, updated));
+   }
+
+   /**
+    * Recent error rate between 0 and 1.
+    */
+   double getErrorRate() {
+      return Double.longBitsToDouble(errorRate.get());
+   }
+
+   /**
+    * Number of requests in flight.
+    */
+   int getInFlight() {
+      return inFlight.get();
+   }
+
+   /**
+    * Score for adaptive replica selection, lower is better: The recent median latency,
+    * scaled by the requests in flight including the next one and by the recent error rate.
+    * Replicas without recent latencies are scored as fast, so they get requests to learn their latency.
+    */
+   double score() {
+      long latency = Math.max(latencies.getValueAtPercentile(50, 1), 0);
+      return (latency + 1.0) * (inFlight.get() + 1) / (1 - Math.min(getErrorRate(), MAX_ERROR_RATE));
+   }
+
+   /**
+    * Statistics for the mbeans handler.
+    */
+   NamedList<Object> toNamedList() {
+      NamedList<Object> result = new SimpleOrderedMap<>();
+      result.add("requests", requests.sum());
+      result.add("errors", errors.sum());
+      result.add("recentErrorRate", getErrorRate());
+      result.add("inFlight", inFlight.get());
+      result.add("recentLatencies", latencies.getCount());
+      result.add("recentLatencyP50", latencies.getValueAtPercentile(50, 1));
+      result.add("recentLatencyP95", latencies.getValueAtPercentile(95, 1));
+      result.add("recentLatencyP99", latencies.getValueAtPercentile(99, 1));
+      return result;
+   }
+}
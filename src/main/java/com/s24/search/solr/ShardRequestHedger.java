@@ -0,0 +1,230 @@
+package com.s24.search.solr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Hedges requests to the replicas of a shard: If the request to the first replica has not returned within
+ * a percentile of the recent latencies of the shard, a duplicate request is sent to the next replica.
+ * The first successful response wins. The other request is not aborted: It runs to completion and its response
+ * is discarded.
+ *
+ * Hedging starts after a minimum number of latencies of the shard have been recorded.
+ * So at the configured percentile, about the remaining percentage of the requests is hedged.
+ * Just the latencies of the first requests are recorded, even if they lose, because recording the hedges as well
+ * would lower the percentile and thus hedge more and more requests.
+ *
+ * Requests which are not hedged run on the calling thread. Hedged requests run on a bounded pool of threads.
+ * If all of its threads are busy, requests are not hedged.
+ */
+class ShardRequestHedger {
+   /**
+    * Logger.
+    */
+   private static final Logger log = LoggerFactory.getLogger(ShardRequestHedger.class);
+
+   /**
+    * Minimum number of recent latencies of a shard before hedging its requests.
+    */
+   static final int MIN_SAMPLES = 100;
+
+   /**
+    * Percentile of the recent latencies of a shard after which a request is hedged.
+    */
+   private final double percentile;
+
+   /**
+    * Minimum delay in ms before hedging a request.
+    */
+   private final long minDelay;
+
+   /**
+    * Length of the window of recent latencies in ms.
+    */
+   private final long window;
+
+   /**
+    * Recent latencies by shard.
+    */
+   private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+   /**
+    * Executor for the requests.
+    */
+   private final ExecutorService executor;
+
+   /**
+    * A request to the replicas of a shard.
+    */
+   interface Attempt<T> {
+      /**
+       * Request replicas, trying them in the given order.
+       *
+       * @param urls URLs of the replicas.
+       */
+      T request(List<String> urls) throws SolrServerException, IOException;
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param percentile Percentile of the recent latencies of a shard after which a request is hedged, e.g. 95.
+    * @param minDelay Minimum delay in ms before hedging a request.
+    * @param window Length of the window of recent latencies in ms.
+    * @param maxThreads Maximum number of threads for hedged requests.
+    */
+   ShardRequestHedger(double percentile, long minDelay, long window, int maxThreads) {
+      checkArgument(percentile > 0 && percentile < 100, "The hedge percentile has to be between 0 and 100.");
+      checkArgument(minDelay >= 0, "The minimum hedge delay must not be negative.");
+      checkArgument(window > 0, "The latency window has to be positive.");
+      checkArgument(maxThreads > 0, "The maximum number of hedge threads has to be positive.");
+      this.percentile = percentile;
+      this.minDelay = minDelay;
+      this.window = window;
+      this.executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("shard-request-hedger-%d").setDaemon(true).build());
+   }
+
+   /**
+    * Request a shard, hedging the request if it is slow.
+    *
+    * @param urls URLs of the replicas of the shard, in the preferred order.
+    * @param attempt Request.
+    * @return Response of the first successful request.
+    */
+   <T> T request(List<String> urls, Attempt<T> attempt) throws SolrServerException, IOException {
+      checkNotNull(urls);
+      LatencyHistogram histogram = latencies.computeIfAbsent(shard(urls), key -> new LatencyHistogram(window));
+      long delay = histogram.getValueAtPercentile(percentile, MIN_SAMPLES);
+      if (delay < 0 || urls.size() <= 1) {
+         return timed(histogram, urls, attempt);
+      }
+
+      long hedgeDelay = Math.max(delay, minDelay);
+      CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+      try {
+         Future<T> primary;
+         try {
+            primary = completion.submit(() -> timed(histogram, urls, attempt));
+         } catch (RejectedExecutionException e) {
+            log.debug("All hedge threads are busy, not hedging request to {}.", urls.get(0));
+            return timed(histogram, urls, attempt);
+         }
+         try {
+            return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+         } catch (TimeoutException e) {
+            log.debug("Hedging request to {} after {} ms.", urls.get(0), hedgeDelay);
+         }
+
+         // Hedge with the next replica, keeping the others for fail over.
+         List<String> hedgeUrls = new ArrayList<>(urls.size());
+         hedgeUrls.addAll(urls.subList(1, urls.size()));
+         hedgeUrls.add(urls.get(0));
+         try {
+            completion.submit(() -> attempt.request(hedgeUrls));
+         } catch (RejectedExecutionException e) {
+            log.debug("All hedge threads are busy, waiting for request to {}.", urls.get(0));
+            return primary.get();
+         }
+
+         try {
+            return completion.take().get();
+         } catch (ExecutionException e) {
+            // Wait for the other request.
+            log.debug("Hedged request failed, waiting for the other one: {}.", e.getCause().getMessage());
+            return completion.take().get();
+         }
+
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new SolrServerException("Interrupted while waiting for " + urls + ".", e);
+      } catch (ExecutionException e) {
+         throw unwrap(e);
+      }
+   }
+
+   /**
+    * Execute a request and record its latency, if it succeeded.
+    */
+   private static <T> T timed(LatencyHistogram histogram, List<String> urls, Attempt<T> attempt)
+         throws SolrServerException, IOException {
+      long start = System.nanoTime();
+      T result = attempt.request(urls);
+      histogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return result;
+   }
+
+   /**
+    * Identify a shard by the sorted URLs of its replicas, which are shuffled for each request.
+    */
+   private static String shard(List<String> urls) {
+      return urls.size() <= 1 ? String.valueOf(urls) : new TreeSet<>(urls).toString();
+   }
+
+   /**
+    * Unwrap the cause of a failed request.
+    */
+   private static SolrServerException unwrap(ExecutionException e) throws IOException {
+      Throwable cause = e.getCause();
+      if (cause instanceof SolrServerException) {
+         return (SolrServerException) cause;
+      } else if (cause instanceof IOException) {
+         throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+         throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+         throw (Error) cause;
+      }
+      return new SolrServerException(cause);
+   }
+
+   /**
+    * Recent latency of a shard at the hedge percentile, -1 if unknown.
+    *
+    * @param urls URLs of the replicas of the shard.
+    */
+   long getHedgeDelay(List<String> urls) {
+      LatencyHistogram histogram = latencies.get(shard(urls));
+      return histogram != null ? histogram.getValueAtPercentile(percentile, MIN_SAMPLES) : -1;
+   }
+
+   /**
+    * Number of recent latencies of a shard.
+    *
+    * @param urls URLs of the replicas of the shard.
+    */
+   long getLatencyCount(List<String> urls) {
+      LatencyHistogram histogram = latencies.get(shard(urls));
+      return histogram != null ? histogram.getCount() : 0;
+   }
+
+   /**
+    * Stop the executor.
+    */
+   void close() {
+      executor.shutdownNow();
+   }
+}
@@ -3,20 +3,56 @@ package com.s24.search.solr.analysis;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.index.IndexReader;
 import org.apache.solr.analysis.TokenizerChain;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.PluginInfo;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.schema.FieldType;
+import org.apache.solr.search.QParserPlugin;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
- * Notifies all {@link SearcherAware}s about new searchers.
+ * Notifies all {@link SearcherAware}s about new searchers:
+ * The token filter factories of all field types and the query parser plugins of the core.
+ *
+ * Configuration in solrconfig.xml:
+ *
+ * <pre>
+ *    &lt;listener event="newSearcher" class="com.s24.search.solr.analysis.{@linkplain SearcherAwareReloader}"&gt;
+ *       &lt;bool name="async"&gt;true&lt;/bool&gt;
+ *       &lt;int name="threads"&gt;4&lt;/int&gt;
+ *    &lt;/listener&gt;
+ * </pre>
+ *
+ * If "async" is true, the {@link SearcherAware}s are informed in the background,
+ * so that the registration of the new searcher is not delayed.
+ * At most one pass is pending, newer passes replace older pending ones.
+ * Each pass holds a reference to the reader of its searcher, so the searcher is not closed while informing.
+ *
+ * "threads" is the number of field types informed in parallel, defaults to 1.
+ * Failures of all field types are collected and reported at the end of a pass.
  */
 public class SearcherAwareReloader extends AbstractSolrEventListener {
    /**
@@ -24,6 +60,26 @@ public class SearcherAwareReloader extends AbstractSolrEventListener {
     */
    private static final Logger logger = LoggerFactory.getLogger(SearcherAwareReloader.class);
 
+   /**
+    * Parameter: Inform in the background?.
+    */
+   public static final String ASYNC = "async";
+
+   /**
+    * Parameter: Number of field types to inform in parallel.
+    */
+   public static final String THREADS = "threads";
+
+   /**
+    * Executor for informing in the background. Null, if informing synchronously.
+    */
+   private ExecutorService executor;
+
+   /**
+    * Executor for informing field types in parallel. Null, if informing field types one after another.
+    */
+   private ExecutorService informers;
+
    /**
     * Constructor.
     * 
@@ -34,31 +90,257 @@ public class SearcherAwareReloader extends AbstractSolrEventListener {
       super(core);
    }
 
+   @Override
+   public void init(NamedList args) {
+      super.init(args);
+
+      Object async = args.get(ASYNC);
+      if (async != null && Boolean.parseBoolean(async.toString())) {
+         executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+               new ArrayBlockingQueue<>(1),
+               new ThreadFactoryBuilder().setNameFormat("searcher-aware-reloader-%d").setDaemon(true).build(),
+               SearcherAwareReloader::discardOldest);
+      }
+
+      Object threads = args.get(THREADS);
+      if (threads != null && Integer.parseInt(threads.toString()) > 1) {
+         informers = Executors.newFixedThreadPool(Integer.parseInt(threads.toString()),
+               new ThreadFactoryBuilder().setNameFormat("searcher-aware-informer-%d").setDaemon(true).build());
+      }
+
+      if (getCore() != null && (executor != null || informers != null)) {
+         getCore().addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+               shutdown(executor);
+               shutdown(informers);
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+            }
+         });
+      }
+   }
+
+   /**
+    * Shutdown executor, if any.
+    *
+    * @param executor
+    *           Executor, may be null.
+    */
+   private static void shutdown(ExecutorService executor) {
+      if (executor != null) {
+         executor.shutdownNow().forEach(SearcherAwareReloader::release);
+      }
+   }
+
+   /**
+    * Replace the pending pass by a newer one, releasing the searcher of the discarded pass.
+    *
+    * @param pass
+    *           The newer pass.
+    * @param executor
+    *           Executor.
+    */
+   private static void discardOldest(Runnable pass, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+         release(pass);
+         return;
+      }
+
+      release(executor.getQueue().poll());
+      executor.execute(pass);
+   }
+
+   /**
+    * Release the searcher of a pass, which will not run.
+    *
+    * @param pass
+    *           Pass, may be null.
+    */
+   private static void release(Runnable pass) {
+      if (pass instanceof Pass) {
+         ((Pass) pass).release();
+      }
+   }
+
    @Override
    public void newSearcher(SolrIndexSearcher searcher, SolrIndexSearcher currentSearcher) {
       checkNotNull(searcher, "Pre-condition violated: searcher must not be null.");
 
+      if (executor == null) {
+         informAll(searcher);
+         return;
+      }
+
+      // The searcher is used after it has been registered, so keep its reader open until the pass has finished.
+      executor.execute(new Pass(searcher));
+   }
+
+   /**
+    * Pass informing all {@link SearcherAware}s in the background.
+    * Holds a reference to the reader of the searcher until it has run or has been discarded.
+    */
+   private final class Pass implements Runnable {
+      /**
+       * The new searcher.
+       */
+      private final SolrIndexSearcher searcher;
+
+      /**
+       * Reader of the searcher, null if the searcher has none.
+       */
+      private final IndexReader reader;
+
+      /**
+       * Has the reference to the reader been released?.
+       */
+      private final AtomicBoolean released = new AtomicBoolean();
+
+      /**
+       * Constructor. Takes a reference to the reader of the searcher.
+       *
+       * @param searcher
+       *           The new searcher.
+       */
+      private Pass(SolrIndexSearcher searcher) {
+         this.searcher = searcher;
+         this.reader = searcher.getIndexReader();
+         if (reader != null) {
+            reader.incRef();
+         }
+      }
+
+      @Override
+      public void run() {
+         try {
+            informAll(searcher);
+         } catch (RuntimeException e) {
+            logger.error("Failed to inform searcher awares in the background.", e);
+         } finally {
+            release();
+         }
+      }
+
+      /**
+       * Release the reference to the reader, just once.
+       */
+      private void release() {
+         if (reader != null && released.compareAndSet(false, true)) {
+            try {
+               reader.decRef();
+            } catch (IOException e) {
+               logger.warn("Failed to release the reader of a searcher.", e);
+            }
+         }
+      }
+   }
+
+   /**
+    * Inform all {@link SearcherAware}s of the schema about a new searcher.
+    *
+    * @param searcher
+    *           The new searcher.
+    */
+   private void informAll(SolrIndexSearcher searcher) {
       logger.info("Informing searcher awares.");
 
-      for (Entry<String, FieldType> entry : searcher.getSchema().getFieldTypes().entrySet()) {
-         String name = entry.getKey();
-         FieldType fieldType = entry.getValue();
-         
-         inform("field type", name, fieldType, searcher);
+      Map<String, Throwable> failures = new TreeMap<>();
+      if (informers == null) {
+         for (Entry<String, FieldType> entry : searcher.getSchema().getFieldTypes().entrySet()) {
+            try {
+               informFieldType(entry.getKey(), entry.getValue(), searcher);
+            } catch (RuntimeException e) {
+               failures.put(entry.getKey(), e);
+            }
+         }
 
-         Analyzer indexAnalyzer = fieldType.getIndexAnalyzer();
-         Analyzer queryAnalyzer = fieldType.getQueryAnalyzer();
-         if (indexAnalyzer instanceof TokenizerChain) {
-            inform(name, (TokenizerChain) indexAnalyzer, searcher);
+      } else {
+         Map<String, Future<?>> results = new LinkedHashMap<>();
+         for (Entry<String, FieldType> entry : searcher.getSchema().getFieldTypes().entrySet()) {
+            results.put(entry.getKey(), informers.submit(() -> informFieldType(entry.getKey(), entry.getValue(), searcher)));
          }
-         if (indexAnalyzer != queryAnalyzer && queryAnalyzer instanceof TokenizerChain) {
-            inform(name, (TokenizerChain) queryAnalyzer, searcher);
+         for (Entry<String, Future<?>> result : results.entrySet()) {
+            try {
+               result.getValue().get();
+            } catch (ExecutionException e) {
+               failures.put(result.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new IllegalStateException("Interrupted while informing searcher awares.", e);
+            }
          }
       }
 
+      SolrCore core = searcher.getCore();
+      if (core != null) {
+         for (PluginInfo info : core.getSolrConfig().getPluginInfos(QParserPlugin.class.getName())) {
+            try {
+               informQueryParser(info.name, core.getQueryPlugin(info.name), searcher);
+            } catch (RuntimeException e) {
+               failures.put("query parser " + info.name, e);
+            }
+         }
+      }
+
+      if (!failures.isEmpty()) {
+         IllegalArgumentException e = new IllegalArgumentException(
+               "Failed to inform " + failures.keySet() + " about a new searcher.");
+         failures.values().forEach(e::addSuppressed);
+         throw e;
+      }
+
       logger.info("All searcher awares have been informed.");
    }
 
+   /**
+    * Inform all {@link SearcherAware}s of a field type about a new searcher.
+    *
+    * @param name
+    *           Name of the field type.
+    * @param fieldType
+    *           The field type.
+    * @param searcher
+    *           The new searcher.
+    */
+   private void informFieldType(String name, FieldType fieldType, SolrIndexSearcher searcher) {
+      inform("field type", name, fieldType, searcher);
+
+      Analyzer indexAnalyzer = fieldType.getIndexAnalyzer();
+      Analyzer queryAnalyzer = fieldType.getQueryAnalyzer();
+      if (indexAnalyzer instanceof TokenizerChain) {
+         inform(name, (TokenizerChain) indexAnalyzer, searcher);
+      }
+      if (indexAnalyzer != queryAnalyzer && queryAnalyzer instanceof TokenizerChain) {
+         inform(name, (TokenizerChain) queryAnalyzer, searcher);
+      }
+   }
+
+   /**
+    * Inform a {@link SearcherAware} query parser plugin about a new searcher.
+    *
+    * @param name
+    *           Name of the query parser.
+    * @param plugin
+    *           The query parser plugin.
+    * @param searcher
+    *           The new searcher.
+    */
+   private void informQueryParser(String name, QParserPlugin plugin, SolrIndexSearcher searcher) {
+      if (plugin instanceof SearcherAware) {
+         logger.info("Informing searcher aware query parser {} ({}) about a new searcher.",
+               name, plugin.getClass().getName());
+         try {
+            ((SearcherAware) plugin).inform(searcher);
+         } catch (IOException e) {
+            logger.error("Failed to inform query parser {} ({}) about a new searcher.",
+                  name, plugin.getClass().getName(), e);
+            throw new IllegalArgumentException("Failed to inform about a new searcher.", e);
+         }
+      }
+   }
+
    /**
     * Inform {@link SearcherAware} about a new searcher.
     * 
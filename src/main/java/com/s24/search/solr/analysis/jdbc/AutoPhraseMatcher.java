@@ -0,0 +1,255 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * Autophrases whitespace separated tokens with a dictionary of phrases.
+ *
+ * The phrases are compiled into a {@link FST} over their lower cased code points, with a single space between
+ * the tokens of a phrase. Autophrasing is a single left to right pass over the tokens: At each token, the FST is
+ * walked along the following tokens for the longest phrase. The walk stops at the first code point without an arc,
+ * so tokens which do not begin any phrase are skipped by a single lookup of the cached root arcs.
+ * Tokens of a phrase are joined by the replacement of whitespace, all other tokens are kept.
+ *
+ * Instances are immutable and thread safe.
+ */
+class AutoPhraseMatcher implements Accountable {
+    /**
+     * Separator of the tokens of a phrase in the FST.
+     */
+    private static final int SEPARATOR = ' ';
+
+    /**
+     * Reusable buffers per thread.
+     */
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * Phrases. Null, if there are no phrases.
+     */
+    private final FST<Object> fst;
+
+    /**
+     * Lower case tokens?
+     */
+    private final boolean ignoreCase;
+
+    /**
+     * Replacement of the whitespace between the tokens of a phrase. If null, the whitespace is removed.
+     */
+    private final Character replaceWhitespaceWith;
+
+    /**
+     * Constructor.
+     *
+     * @param phrases
+     *           Phrases. Matched case insensitive.
+     * @param ignoreCase
+     *           Lower case tokens?
+     * @param replaceWhitespaceWith
+     *           Replacement of the whitespace between the tokens of a phrase. If null, the whitespace is removed.
+     */
+    AutoPhraseMatcher(Collection<String> phrases, boolean ignoreCase, Character replaceWhitespaceWith)
+            throws IOException {
+        this.fst = compile(phrases);
+        this.ignoreCase = ignoreCase;
+        this.replaceWhitespaceWith = replaceWhitespaceWith;
+    }
+
+    /**
+     * Compile phrases into a FST.
+     *
+     * @param phrases
+     *           Phrases.
+     * @return FST. Null, if there are no phrases.
+     */
+    private static FST<Object> compile(Collection<String> phrases) throws IOException {
+        List<String> keys = new ArrayList<>(phrases.size());
+        StringBuilder buffer = new StringBuilder();
+        for (String phrase : phrases) {
+            String key = normalize(phrase, buffer);
+            if (!key.isEmpty()) {
+                keys.add(key);
+            }
+        }
+
+        // The FST has to be built in the order of the code points.
+        Collections.sort(keys, AutoPhraseMatcher::compareCodePoints);
+
+        NoOutputs outputs = NoOutputs.getSingleton();
+        Builder<Object> builder = new Builder<>(FST.INPUT_TYPE.BYTE4, outputs);
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        String last = null;
+        for (String key : keys) {
+            if (!key.equals(last)) {
+                builder.add(Util.toUTF32(key, scratch), outputs.getNoOutput());
+                last = key;
+            }
+        }
+
+        return builder.finish();
+    }
+
+    /**
+     * Normalize a phrase to its lower cased tokens, separated by a single space.
+     */
+    private static String normalize(String phrase, StringBuilder buffer) {
+        buffer.setLength(0);
+        boolean separator = false;
+        for (int i = 0; i < phrase.length();) {
+            int c = phrase.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isWhitespace(c)) {
+                separator = buffer.length() > 0;
+            } else {
+                if (separator) {
+                    buffer.append((char) SEPARATOR);
+                    separator = false;
+                }
+                buffer.appendCodePoint(Character.toLowerCase(c));
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Compare strings by their code points, the order of the FST.
+     */
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    /**
+     * Autophrase whitespace separated tokens.
+     *
+     * @param input
+     *           Tokens, separated by whitespace.
+     * @return Autophrased tokens, separated by a single space.
+     */
+    String autophrase(String input) throws IOException {
+        StringBuilder result = buffers.get();
+        result.setLength(0);
+        FST.BytesReader reader = fst != null ? fst.getBytesReader() : null;
+        FST.Arc<Object> arc = new FST.Arc<>();
+        for (int i = skipWhitespace(input, 0); i < input.length();) {
+            int end = reader != null ? longestMatch(input, i, reader, arc) : -1;
+            if (end < 0) {
+                end = skipToken(input, i);
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            appendPhrase(input, i, end, result);
+            i = skipWhitespace(input, end);
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Find the longest phrase starting at a token.
+     *
+     * @param input
+     *           Tokens, separated by whitespace.
+     * @param start
+     *           Start of the first token.
+     * @return End of the last token of the longest phrase. -1, if there is no phrase.
+     */
+    private int longestMatch(String input, int start, FST.BytesReader reader, FST.Arc<Object> arc)
+            throws IOException {
+        int last = -1;
+        fst.getFirstArc(arc);
+        for (int i = start; i < input.length();) {
+            int c = input.codePointAt(i);
+            if (Character.isWhitespace(c)) {
+                // end of a token
+                if (arc.isFinal()) {
+                    last = i;
+                }
+                i = skipWhitespace(input, i);
+                if (i >= input.length() || fst.findTargetArc(SEPARATOR, arc, arc, reader) == null) {
+                    return last;
+                }
+            } else if (fst.findTargetArc(Character.toLowerCase(c), arc, arc, reader) == null) {
+                return last;
+            } else {
+                i += Character.charCount(c);
+            }
+        }
+        return arc.isFinal() ? input.length() : last;
+    }
+
+    /**
+     * Append the tokens of a phrase, joined by the replacement of whitespace and lower cased if needed.
+     */
+    private void appendPhrase(String input, int start, int end, StringBuilder result) {
+        for (int i = start; i < end;) {
+            int c = input.codePointAt(i);
+            if (Character.isWhitespace(c)) {
+                if (replaceWhitespaceWith != null) {
+                    result.append(replaceWhitespaceWith.charValue());
+                }
+                i = skipWhitespace(input, i);
+            } else {
+                result.appendCodePoint(ignoreCase ? Character.toLowerCase(c) : c);
+                i += Character.charCount(c);
+            }
+        }
+    }
+
+    /**
+     * Skip whitespace.
+     *
+     * @return Position of the next non whitespace character or the end of the input.
+     */
+    private static int skipWhitespace(String input, int i) {
+        while (i < input.length() && Character.isWhitespace(input.codePointAt(i))) {
+            i += Character.charCount(input.codePointAt(i));
+        }
+        return i;
+    }
+
+    /**
+     * Skip a token.
+     *
+     * @return Position of the next whitespace character or the end of the input.
+     */
+    private static int skipToken(String input, int i) {
+        while (i < input.length() && !Character.isWhitespace(input.codePointAt(i))) {
+            i += Character.charCount(input.codePointAt(i));
+        }
+        return i;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return fst != null ? fst.ramBytesUsed() : 0;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.handler.component.QueryComponent;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.QueryParsing;
+import org.apache.solr.search.SyntaxError;
+
+import java.io.IOException;
+
+/**
+ * Search component which marks the main query of a request for the {@link JdbcAutoPhrasingQParserPlugin}.
+ *
+ * If the main query is parsed by an autophrasing query parser, it puts {@link JdbcAutoPhrasingQParserPlugin#MAIN_QUERY}
+ * into the request context. The {@link QueryComponent} parses the main query before any filter query,
+ * so the first autophrasing parser created afterwards takes the marker and knows it parses the main query.
+ * Register it as the last of the first-components, so it sees main queries rewritten by components before it:
+ *
+ * <pre>
+ *    &lt;searchComponent name="autophrasingMainQuery" class="com.s24.search.solr.analysis.jdbc.AutoPhrasingMainQueryComponent"/&gt;
+ *    &lt;requestHandler name="/select" class="solr.SearchHandler"&gt;
+ *       &lt;arr name="first-components"&gt;
+ *          &lt;str&gt;autophrasingMainQuery&lt;/str&gt;
+ *       &lt;/arr&gt;
+ *    &lt;/requestHandler&gt;
+ * </pre>
+ */
+public class AutoPhrasingMainQueryComponent extends SearchComponent {
+
+    @Override
+    public void prepare(ResponseBuilder rb) throws IOException {
+        SolrParams params = rb.req.getParams();
+        String queryString = rb.getQueryString() != null ? rb.getQueryString() : params.get(CommonParams.Q);
+        if (queryString == null) {
+            return;
+        }
+
+        // Same choice of the parser as the QueryComponent.
+        String parserName = params.get(QueryParsing.DEFTYPE, QParserPlugin.DEFAULT_QTYPE);
+        try {
+            SolrParams localParams = QueryParsing.getLocalParams(queryString, params);
+            if (localParams != null) {
+                parserName = localParams.get(QueryParsing.TYPE, parserName);
+            }
+        } catch (SyntaxError e) {
+            // The QueryComponent reports the invalid query.
+            return;
+        }
+
+        if (rb.req.getCore().getQueryPlugin(parserName) instanceof JdbcAutoPhrasingQParserPlugin) {
+            rb.req.getContext().put(JdbcAutoPhrasingQParserPlugin.MAIN_QUERY, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void process(ResponseBuilder rb) throws IOException {
+        // Nothing to do.
+    }
+
+    @Override
+    public String getDescription() {
+        return "Marks the main query for the autophrasing query parser";
+    }
+
+    @Override
+    public String getSource() {
+        return null;
+    }
+}
@@ -0,0 +1,353 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes queries for autophrasing and restores them afterwards.
+ *
+ * Before autophrasing, field names, operators, parentheses, quotes and units of measure are normalized,
+ * so that the whitespace tokenizer yields separate tokens for them.
+ * After autophrasing, the original syntax is restored.
+ *
+ * Each step is a single scan over a reusable per thread buffer.
+ * Just the unit of measure rules use precompiled patterns, which are applied only to queries containing digits,
+ * and field names use a precompiled pattern, which is applied only to queries containing a space before a colon.
+ * The results are identical to those of the former chain of regular expression replacements.
+ */
+class AutoPhrasingQueryNormalizer {
+    /**
+     * Whitespace before a colon.
+     */
+    private static final Pattern COLON = Pattern.compile("\\s:");
+
+    /**
+     * Unit of measure rules: Patterns and their replacements.
+     */
+    private static final Pattern[] UNITS = {
+            Pattern.compile("(?i)(\\d+)\\s?(pound[s]?|lb[s]?)\\b"),
+            Pattern.compile("(?i)(\\d+)\\s?(inch(es)?)"),
+            Pattern.compile("(?i)\\b(\\d+)\\s?(inche?s?|i+n?|[\"]+)\\s?(w|l|h|d)?(x+|\\s+|\\b+|\\s?x+|$)"),
+            Pattern.compile("(?i)(\\d+)\\s?(ounce[s]?|oz)\\b"),
+            Pattern.compile("(?i)(\\d+)\\s?(quart[s]?|qt[s]?)\\b"),
+            Pattern.compile("(?i)(\\d+)\\s?(gallon[s]?|gal?)\\b"),
+            Pattern.compile("(?i)(\\d+)\\s?(yd[s]?|yard[s]?)\\b"),
+            Pattern.compile("(?i)(\\d+)\\s?(mm|cc|ml)\\b")
+    };
+
+    /**
+     * Replacements of the unit of measure rules.
+     */
+    private static final String[] UNIT_REPLACEMENTS = {
+            "$1lb", "$1in ", "$1in ", "$1oz", "$1qt", "$1gal", "$1yd", "$1$2"
+    };
+
+    /**
+     * Marker for opening quotes.
+     */
+    private static final String OPEN_QUOTE = "open_quote`";
+
+    /**
+     * Marker for closing quotes.
+     */
+    private static final String CLOSE_QUOTE = "close_quote`";
+
+    /**
+     * Reusable buffers per thread.
+     */
+    private static final ThreadLocal<StringBuilder[]> buffers =
+            ThreadLocal.withInitial(() -> new StringBuilder[] { new StringBuilder(), new StringBuilder() });
+
+    /**
+     * Normalize logical operators? Just needed if the query gets lower cased.
+     */
+    private final boolean ignoreCase;
+
+    /**
+     * Constructor.
+     *
+     * @param ignoreCase
+     *           Normalize logical operators? Just needed if the query gets lower cased.
+     */
+    AutoPhrasingQueryNormalizer(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Normalize query for autophrasing.
+     *
+     * @param query
+     *           Query.
+     * @return Normalized query, surrounded by spaces.
+     */
+    String normalize(String query) {
+        StringBuilder[] buffers = AutoPhrasingQueryNormalizer.buffers.get();
+        String input = query;
+        // Move colons in front of the whitespace preceding them, e.g. "field :value" to "field: value".
+        while (input.contains(" :")) {
+            input = COLON.matcher(input).replaceAll(": ");
+        }
+
+        StringBuilder output = clear(buffers[0]);
+        boolean digits = normalizeSyntax(input, output);
+
+        String result = output.toString();
+        if (digits) {
+            for (int i = 0; i < UNITS.length; i++) {
+                result = UNITS[i].matcher(result).replaceAll(UNIT_REPLACEMENTS[i]);
+            }
+        }
+
+        if (result.indexOf('"') < 0) {
+            return result;
+        }
+        markQuotes(result, clear(buffers[1]));
+        return buffers[1].toString();
+    }
+
+    /**
+     * Restore the query syntax after autophrasing.
+     *
+     * @param query
+     *           Normalized and autophrased query.
+     * @return Query.
+     */
+    String restore(String query) {
+        StringBuilder[] buffers = AutoPhrasingQueryNormalizer.buffers.get();
+        StringBuilder input = clear(buffers[1]);
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            input.append(c);
+            // Join mandatory and optional clauses.
+            if ((c == '+' || c == '-') && i + 1 < query.length() && query.charAt(i + 1) == ' ') {
+                i++;
+            }
+        }
+
+        StringBuilder output = clear(buffers[0]);
+        restoreSyntax(input, output);
+        return output.toString();
+    }
+
+    /**
+     * Separate mandatory and optional clauses, parentheses and (if ignoring case) logical operators.
+     * Surrounds the result by spaces.
+     *
+     * @param input
+     *           Query.
+     * @param output
+     *           Buffer for the result.
+     * @return Whether the query contains digits.
+     */
+    private boolean normalizeSyntax(CharSequence input, StringBuilder output) {
+        boolean digits = false;
+        // End of the last replaced operators, to not replace overlapping operators.
+        int lastAnd = -1, lastOr = -1, lastTo = -1;
+
+        output.append(' ');
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            digits |= c >= '0' && c <= '9';
+
+            if (ignoreCase) {
+                // Operators have to be preceded by a space, which may have been inserted after + or -.
+                boolean space = i > 0 && (input.charAt(i - 1) == '+' || input.charAt(i - 1) == '-' || input.charAt(i - 1) == ' ');
+                if (c == 'A' && space && i - 1 != lastAnd && startsWith(input, i, "AND ")) {
+                    output.append("&&");
+                    lastAnd = i + 3;
+                    i += 2;
+                    continue;
+                }
+                if (c == 'O' && space && i - 1 != lastOr && startsWith(input, i, "OR ")) {
+                    output.append("||");
+                    lastOr = i + 2;
+                    i += 1;
+                    continue;
+                }
+                if (c == 'T' && space && i - 1 != lastTo && startsWith(input, i, "TO ")) {
+                    output.append("`to`");
+                    lastTo = i + 2;
+                    i += 1;
+                    continue;
+                }
+                if (c == 'N' && startsWith(input, i, "NOW")) {
+                    output.append("`now`");
+                    i += 2;
+                    continue;
+                }
+            }
+
+            switch (c) {
+                case '+':
+                case '-':
+                case '(':
+                    output.append(c).append(' ');
+                    break;
+                case ')':
+                    output.append(' ').append(c);
+                    break;
+                default:
+                    output.append(c);
+            }
+        }
+        output.append(' ');
+
+        return digits;
+    }
+
+    /**
+     * Replace quotes by markers: Quotes after whitespace open, quotes before whitespace close phrases.
+     *
+     * @param input
+     *           Query.
+     * @param output
+     *           Buffer for the result.
+     */
+    private static void markQuotes(CharSequence input, StringBuilder output) {
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (isWhitespace(c) && i + 1 < length && input.charAt(i + 1) == '"') {
+                output.append(' ').append(OPEN_QUOTE).append(' ');
+                i++;
+
+            } else if (c == '"' && i == 0) {
+                output.append(' ').append(OPEN_QUOTE).append(' ');
+
+            } else if (c == '"' && (i + 1 == length || isWhitespace(input.charAt(i + 1)))) {
+                output.append(' ').append(CLOSE_QUOTE).append(' ');
+                if (i + 2 < length && input.charAt(i + 2) == '"') {
+                    // The whitespace opens the next phrase too.
+                    output.append(OPEN_QUOTE).append(' ');
+                    i += 2;
+                } else if (i + 1 < length) {
+                    i++;
+                }
+
+            } else {
+                output.append(c);
+            }
+        }
+    }
+
+    /**
+     * Restore (if ignoring case) logical operators, parentheses and quotes.
+     *
+     * @param input
+     *           Normalized and autophrased query with joined mandatory and optional clauses.
+     * @param output
+     *           Buffer for the result.
+     */
+    private void restoreSyntax(CharSequence input, StringBuilder output) {
+        // End of the last restored operators, to not restore overlapping operators.
+        int lastAnd = -1, lastOr = -1, lastTo = -1;
+        // Skip the next space, because it is part of an opening parenthesis or quote?
+        boolean skip = false;
+
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            boolean skipThis = skip;
+            skip = false;
+
+            if (ignoreCase && c == ' ') {
+                if (i >= lastAnd && startsWith(input, i, " && ")) {
+                    appendOperator(output, "AND", skipThis);
+                    lastAnd = i + 4;
+                    i += 2;
+                    continue;
+                }
+                if (i >= lastOr && startsWith(input, i, " || ")) {
+                    appendOperator(output, "OR", skipThis);
+                    lastOr = i + 4;
+                    i += 2;
+                    continue;
+                }
+                if (i >= lastTo && startsWith(input, i, " `to` ")) {
+                    appendOperator(output, "TO", skipThis);
+                    lastTo = i + 6;
+                    i += 4;
+                    continue;
+                }
+            }
+            if (ignoreCase && c == '`' && startsWith(input, i, "`now`")) {
+                output.append("NOW");
+                i += 4;
+                continue;
+            }
+
+            if (c == '(' && i + 1 < length && input.charAt(i + 1) == ' ') {
+                output.append(c);
+                skip = true;
+
+            } else if (c == ')') {
+                if (output.length() > 0 && output.charAt(output.length() - 1) == ' ') {
+                    output.setLength(output.length() - 1);
+                }
+                output.append(c);
+
+            } else if (c == 'o' && startsWith(input, i, OPEN_QUOTE) && i + OPEN_QUOTE.length() < length
+                    && isWhitespace(input.charAt(i + OPEN_QUOTE.length()))
+                    && !startsWith(input, i + OPEN_QUOTE.length(), " )")) {
+                output.append('"');
+                i += OPEN_QUOTE.length() - 1;
+                skip = true;
+
+            } else if (isWhitespace(c) && !skipThis && startsWith(input, i + 1, CLOSE_QUOTE)
+                    && !(ignoreCase && startsWith(input, i + CLOSE_QUOTE.length(), "`now`"))) {
+                output.append('"');
+                i += CLOSE_QUOTE.length();
+
+            } else if (!skipThis) {
+                output.append(c);
+            }
+        }
+    }
+
+    /**
+     * Append restored operator, preceded by a space.
+     *
+     * @param output
+     *           Buffer for the result.
+     * @param operator
+     *           Operator.
+     * @param skipSpace
+     *           Skip the preceding space?.
+     */
+    private static void appendOperator(StringBuilder output, String operator, boolean skipSpace) {
+        if (!skipSpace) {
+            output.append(' ');
+        }
+        output.append(operator);
+    }
+
+    /**
+     * Does the input contain the given string at the given position?.
+     */
+    private static boolean startsWith(CharSequence input, int position, String s) {
+        if (position + s.length() > input.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (input.charAt(position + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Is the character whitespace in terms of the regular expression class \s?.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Clear buffer for reuse.
+     */
+    private static StringBuilder clear(StringBuilder buffer) {
+        buffer.setLength(0);
+        return buffer;
+    }
+}
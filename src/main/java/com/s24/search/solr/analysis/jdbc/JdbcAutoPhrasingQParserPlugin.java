@@ -1,40 +1,87 @@
 package com.s24.search.solr.analysis.jdbc;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.lucidworks.analysis.AutoPhrasingParameters;
-import com.lucidworks.analysis.AutoPhrasingTokenFilter;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.core.LowerCaseFilter;
-import org.apache.lucene.analysis.core.StopFilter;
-import org.apache.lucene.analysis.core.WhitespaceTokenizer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.analysis.util.CharArraySet;
+import com.s24.search.solr.ConfiguringHttpShardHandlerFactory;
+import com.s24.search.solr.analysis.SearcherAware;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.WordlistLoader;
+import org.apache.lucene.util.Accountable;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-
-
-public class JdbcAutoPhrasingQParserPlugin extends QParserPlugin implements ResourceLoaderAware {
+import java.util.Map;
+
+
+/**
+ * Query parser plugin which autophrases queries with phrases loaded from a database,
+ * before passing them to a downstream query parser.
+ *
+ * Each version of the phrases is compiled aside into an {@link AutoPhraseMatcher}, together with its cache of
+ * rewritten queries, and published atomically. So reloads on new searchers or periodic refreshes never block
+ * query parsing and rewrites of former phrases are never served.
+ *
+ * With {@value #REWRITE_ON_COORDINATOR}, the coordinator of a distributed request rewrites the main query once and
+ * forwards it to the shards via the {@link ConfiguringHttpShardHandlerFactory}, marked with {@value #AUTOPHRASED}.
+ * On shard requests marked that way, just the main query is passed to the downstream query parser unchanged.
+ * Filter queries and other nested queries are still autophrased.
+ * The main query is marked by the {@link AutoPhrasingMainQueryComponent}, without it every query is autophrased.
+ */
+public class JdbcAutoPhrasingQParserPlugin extends QParserPlugin implements ResourceLoaderAware, SearcherAware {
+
+    /**
+     * Parameter: Maximum number of cached query rewrites. 0 disables the cache.
+     * Each version of the phrases has its own cache, so the cache statistics start over with each reload.
+     */
+    public static final String CACHE_SIZE = "cacheSize";
+
+    /**
+     * Parameter: Rewrite distributed queries just once on the coordinator? Default false.
+     */
+    public static final String REWRITE_ON_COORDINATOR = "rewriteOnCoordinator";
+
+    /**
+     * Request parameter: Marks queries which have already been autophrased, e.g. by the coordinator.
+     */
+    public static final String AUTOPHRASED = "autophrased";
+
+    /**
+     * Request context key: Marks that the next autophrasing parser parses the main query.
+     * Put by the {@link AutoPhrasingMainQueryComponent}, taken by the first parser created afterwards.
+     */
+    public static final String MAIN_QUERY = JdbcAutoPhrasingQParserPlugin.class.getName() + ".mainQuery";
 
     private static final Logger Log = LoggerFactory.getLogger(JdbcAutoPhrasingQParserPlugin.class);
     private static final Charset UTF8 = Charset.forName("UTF-8");
-    private CharArraySet phraseSets;
 
     private AutoPhrasingParameters autoPhrasingParameters;
+    private AutoPhrasingQueryNormalizer normalizer;
+    private int cacheSize;
+    private boolean rewriteOnCoordinator;
     private JdbcReader reader;
+    private JdbcDictionary<Phrases> phrases;
 
 
     @Override
@@ -42,8 +89,13 @@ public class JdbcAutoPhrasingQParserPlugin extends QParserPlugin implements Reso
         Log.debug("init JdbcAutoPhrasingQParserPlugin...");
         SolrParams solrParams = SolrParams.toSolrParams(initArgs);
         autoPhrasingParameters = new AutoPhrasingParameters(solrParams);
+        normalizer = new AutoPhrasingQueryNormalizer(autoPhrasingParameters.getIgnoreCase());
+        cacheSize = solrParams.getInt(CACHE_SIZE, 10000);
+        rewriteOnCoordinator = solrParams.getBool(REWRITE_ON_COORDINATOR, false);
 
-        reader = JdbcReaderFactory.createFromSolrParams(SolrParams.toMap(initArgs), null);
+        Map<String, String> config = SolrParams.toMap(initArgs);
+        reader = JdbcReaderFactory.createFromSolrParams(new HashMap<>(config), null);
+        phrases = new JdbcDictionary<>("query autophrases", reader, this::compile, Arrays.asList(getClass(), config));
     }
 
     @Override
@@ -54,120 +106,158 @@ public class JdbcAutoPhrasingQParserPlugin extends QParserPlugin implements Reso
 
         String modQ = qStr;
         if (qStr != null) {
-            modQ = filter(qStr);
+            boolean mainQuery = req.getContext().remove(MAIN_QUERY) != null;
+            if (!mainQuery || !isAutophrased(req)) {
+                modQ = cachedFilter(qStr);
+                // The local params of the main query would get lost on the shards.
+                if (rewriteOnCoordinator && mainQuery && localParams == null) {
+                    forwardToShards(req, modQ);
+                }
+            }
             modifiableSolrParams.set("q", modQ);
         }
         return req.getCore().getQueryPlugin(autoPhrasingParameters.getDownstreamParser())
                 .createParser(modQ, localParams, modifiableSolrParams, req);
     }
 
-    private String filter(String qStr) {
-
-        String query = qStr;
-
-        // filter : for field names
-        while (query.contains(" :"))
-            query = query.replaceAll("\\s:", ": ");
+    /**
+     * Is the main query of a shard request already autophrased by the coordinator?
+     */
+    private static boolean isAutophrased(SolrQueryRequest req) {
+        SolrParams params = req.getParams();
+        return params.getBool(ShardParams.IS_SHARD, false) && params.getBool(AUTOPHRASED, false);
+    }
 
-        // mandatory and optional clauses
-        query = query.replaceAll("\\+", "+ ");
-        query = query.replaceAll("\\-", "- ");
+    /**
+     * Let the {@link ConfiguringHttpShardHandlerFactory} forward the rewritten main query to the shards,
+     * marked as autophrased, so the shards do not rewrite it again.
+     */
+    private void forwardToShards(SolrQueryRequest req, String modQ) {
+        ModifiableSolrParams shardParams = new ModifiableSolrParams();
+        shardParams.set(CommonParams.Q, modQ);
+        shardParams.set(AUTOPHRASED, true);
+        req.getContext().put(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS, shardParams);
+    }
 
-        // logical operators
-        if (autoPhrasingParameters.getIgnoreCase()) {
-            query = query.replaceAll(" AND ", " && ");
-            query = query.replaceAll(" OR ", " || ");
-            query = query.replaceAll(" TO ", " `to` ");
-            query = query.replaceAll("NOW", "`now`");
+    private String cachedFilter(String qStr) {
+        // use one version of the phrases for the whole rewrite
+        Phrases current = phrases.get();
+        if (current.queries == null) {
+            return filter(current, qStr);
         }
 
-        // grouping with parenthesis
-        query = query.replaceAll("\\(", "( ");
-        query = query.replaceAll("\\)", " )");
+        String query = current.queries.getIfPresent(qStr);
+        if (query == null) {
+            query = filter(current, qStr);
+            current.queries.put(qStr, query);
+        }
+        return query;
+    }
 
-        query = String.format(" %s ", query);
+    @VisibleForTesting
+    String filter(String qStr) {
+        return filter(phrases.get(), qStr);
+    }
 
-        // unit of measure queries
-        query = query.replaceAll("(?i)(\\d+)\\s?(pound[s]?|lb[s]?)\\b", "$1lb");
-        query = query.replaceAll("(?i)(\\d+)\\s?(inch(es)?)", "$1in ");
-        query = query.replaceAll("(?i)\\b(\\d+)\\s?(inche?s?|i+n?|[\"]+)\\s?(w|l|h|d)?(x+|\\s+|\\b+|\\s?x+|$)", "$1in ");
-        query = query.replaceAll("(?i)(\\d+)\\s?(ounce[s]?|oz)\\b", "$1oz");
-        query = query.replaceAll("(?i)(\\d+)\\s?(quart[s]?|qt[s]?)\\b", "$1qt");
-        query = query.replaceAll("(?i)(\\d+)\\s?(gallon[s]?|gal?)\\b", "$1gal");
-        query = query.replaceAll("(?i)(\\d+)\\s?(yd[s]?|yard[s]?)\\b", "$1yd");
-        query = query.replaceAll("(?i)(\\d+)\\s?(mm|cc|ml)\\b", "$1$2");
+    private String filter(Phrases current, String qStr) {
 
-        // phrases with quotes
-        query = query.replaceAll("(^|\\s)\"", " open_quote` ");
-        query = query.replaceAll("\"(\\s|$)", " close_quote` ");
+        // normalize field names, operators, parenthesis, units of measure and quotes
+        String query = normalizer.normalize(qStr);
 
         // autophrase the query
         try {
-            query = autophrase(query);
+            query = autophrase(current, query);
         } catch (IOException ioe) {
             Log.error(ioe.toString());
         }
 
-        // restore mandatory and optional
-        query = query.replaceAll("\\+ ", "+");
-        query = query.replaceAll("\\- ", "-");
-
-        // restore logical operators
-        if (autoPhrasingParameters.getIgnoreCase()) {
-            query = query.replaceAll(" && ", " AND ");
-            query = query.replaceAll(" \\|\\| ", " OR ");
-            query = query.replaceAll(" `to` ", " TO ");
-            query = query.replaceAll("`now`", "NOW");
-        }
-
-        // restore grouping with parenthesis
-        query = query.replaceAll( "\\( ", "(" );
-        query = query.replaceAll( " \\)", ")" );
-
-        // restore quotes
-        query = query.replaceAll("open_quote`\\s", "\"");
-        query = query.replaceAll("\\sclose_quote`", "\"");
-
-        return query;
+        // restore operators, parenthesis and quotes
+        return normalizer.restore(query);
     }
 
-    private String autophrase(String input) throws IOException {
-        WhitespaceTokenizer wt = new WhitespaceTokenizer();
-        wt.setReader(new StringReader(input));
-        TokenStream ts = wt;
-        if (autoPhrasingParameters.getIgnoreCase()) {
-            ts = new LowerCaseFilter(wt);
-        }
-        AutoPhrasingTokenFilter autoPhrasingTokenFilter =
-                new AutoPhrasingTokenFilter(ts, phraseSets);
-        autoPhrasingTokenFilter.setReplaceWhitespaceWith(autoPhrasingParameters.getReplaceWhitespaceWith());
-        CharTermAttribute term = autoPhrasingTokenFilter.addAttribute(CharTermAttribute.class);
-        autoPhrasingTokenFilter.reset();
-
-        StringBuilder stringBuilder = new StringBuilder();
-        while (autoPhrasingTokenFilter.incrementToken()) {
-            stringBuilder.append(term.toString()).append(" ");
-        }
+    @VisibleForTesting
+    String autophrase(String input) throws IOException {
+        return autophrase(phrases.get(), input);
+    }
 
-        return stringBuilder.toString().trim();
+    private String autophrase(Phrases current, String input) throws IOException {
+        return current.matcher.autophrase(input);
     }
 
     @Override
     public void inform(ResourceLoader loader) throws IOException {
-        JdbcResourceLoader jdbcLoader = new JdbcResourceLoader(loader, reader, UTF8);
-        phraseSets = getWordSet(jdbcLoader, true);
+        phrases.load(loader);
     }
 
-    private CharArraySet getWordSet(ResourceLoader loader, boolean ignoreCase)
-            throws IOException {
+    @Override
+    public void inform(SolrIndexSearcher searcher) {
+        try {
+            phrases.reload(searcher.getCore().getResourceLoader());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to notify about new searcher.", e);
+        }
+    }
 
-        CharArraySet words = new CharArraySet(500, ignoreCase);
-        List<String> stopWords = getLines(loader);
-        words.addAll(StopFilter.makeStopSet(stopWords, ignoreCase));
-        return words;
+    /**
+     * Compile the phrases into a new matcher with an empty cache of rewritten queries.
+     */
+    private Phrases compile(ResourceLoader loader, JdbcReader reader) throws IOException {
+        AutoPhraseMatcher matcher = new AutoPhraseMatcher(getLines(new JdbcResourceLoader(loader, reader, UTF8)),
+                autoPhrasingParameters.getIgnoreCase(), autoPhrasingParameters.getReplaceWhitespaceWith());
+        Cache<String, String> queries = cacheSize > 0 ?
+                CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().<String, String>build() : null;
+        return new Phrases(matcher, queries);
+    }
+
+    /**
+     * Statistics of the loads of the phrases and of the cache of the current version of the phrases.
+     * The cache statistics start over with each reload.
+     */
+    @Override
+    public NamedList getStatistics() {
+        NamedList<Object> statistics = new SimpleOrderedMap<>();
+        JdbcLoadStatistics loadStatistics = reader.getLoadStatistics();
+        if (loadStatistics != null) {
+            statistics.addAll(loadStatistics.toNamedList());
+        }
+        Cache<String, String> queries = phrases.isLoaded() ? phrases.get().queries : null;
+        if (queries != null) {
+            CacheStats stats = queries.stats();
+            statistics.add("lookups", stats.requestCount());
+            statistics.add("hits", stats.hitCount());
+            statistics.add("misses", stats.missCount());
+            statistics.add("hitratio", stats.hitRate());
+            statistics.add("evictions", stats.evictionCount());
+            statistics.add("size", queries.size());
+        }
+        return statistics;
     }
 
     private List<String> getLines(ResourceLoader loader) throws IOException {
         return WordlistLoader.getLines(loader.openResource("database"), StandardCharsets.UTF_8);
     }
+
+    /**
+     * Version of the phrases: The matcher of the phrases and the cache of queries rewritten with them.
+     */
+    private static final class Phrases implements Accountable {
+
+        private final AutoPhraseMatcher matcher;
+        private final Cache<String, String> queries;
+
+        Phrases(AutoPhraseMatcher matcher, Cache<String, String> queries) {
+            this.matcher = matcher;
+            this.queries = queries;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return matcher.ramBytesUsed();
+        }
+
+        @Override
+        public Collection<Accountable> getChildResources() {
+            return Collections.singletonList(matcher);
+        }
+    }
 }
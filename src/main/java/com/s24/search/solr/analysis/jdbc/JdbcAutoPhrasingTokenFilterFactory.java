@@ -2,19 +2,25 @@ package com.s24.search.solr.analysis.jdbc;
 
 import com.lucidworks.analysis.*;
 import com.s24.search.solr.analysis.SearcherAware;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.solr.search.SolrIndexSearcher;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Factory for a {@link AutoPhrasingTokenFilter} which loads autophrases from a database.
  *
+ * Each version of the autophrases is compiled by a separate {@link AutoPhrasingTokenFilterFactory}
+ * and published atomically, so reloads never affect concurrent analysis.
+ *
  * @author John Schlederer
  */
-public class JdbcAutoPhrasingTokenFilterFactory extends AutoPhrasingTokenFilterFactory implements SearcherAware{
+public class JdbcAutoPhrasingTokenFilterFactory extends AutoPhrasingTokenFilterFactory implements SearcherAware, JdbcInfoMBean {
 
     /**
      * {@link Charset} to encode synonym database with. Has to be the same as in
@@ -27,6 +33,11 @@ public class JdbcAutoPhrasingTokenFilterFactory extends AutoPhrasingTokenFilterF
      */
     private final JdbcReader reader;
 
+    /**
+     * Autophrases, compiled into a {@link AutoPhrasingTokenFilterFactory}.
+     */
+    private final JdbcDictionary<AutoPhrasingTokenFilterFactory> phrases;
+
     /**
      * Constructor.
      *
@@ -39,6 +50,8 @@ public class JdbcAutoPhrasingTokenFilterFactory extends AutoPhrasingTokenFilterF
         super(args);
 
         this.reader = reader;
+        this.phrases = new JdbcDictionary<>("autophrases", reader, this::compile,
+                Arrays.asList(getClass(), getOriginalArgs()));
     }
 
     /**
@@ -51,17 +64,41 @@ public class JdbcAutoPhrasingTokenFilterFactory extends AutoPhrasingTokenFilterF
         this(args, JdbcReaderFactory.createFromSolrParams(args, "phrases"));
     }
 
+    @Override
+    public TokenStream create(TokenStream input) {
+        return phrases.get().create(input);
+    }
+
     @Override
     public void inform(ResourceLoader loader) throws IOException {
-        super.inform(new JdbcResourceLoader(loader, reader, UTF8));
+        phrases.load(loader);
+    }
+
+    @Override
+    public JdbcReader getJdbcReader() {
+        return reader;
     }
 
     @Override
     public void inform(SolrIndexSearcher searcher) {
         try {
-            inform(searcher.getCore().getResourceLoader());
+            phrases.reload(searcher.getCore().getResourceLoader());
         } catch (IOException e) {
             throw new IllegalArgumentException("Failed to notify about new searcher.", e);
         }
     }
+
+    /**
+     * Compile the autophrases into a new {@link AutoPhrasingTokenFilterFactory}.
+     *
+     * @param loader
+     *           Resource loader.
+     * @param reader
+     *           Reader for autophrases.
+     */
+    private AutoPhrasingTokenFilterFactory compile(ResourceLoader loader, JdbcReader reader) throws IOException {
+        AutoPhrasingTokenFilterFactory factory = new AutoPhrasingTokenFilterFactory(new HashMap<>(getOriginalArgs()));
+        factory.inform(new JdbcResourceLoader(loader, reader, UTF8));
+        return factory;
+    }
 }
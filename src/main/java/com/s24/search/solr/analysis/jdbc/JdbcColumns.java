@@ -0,0 +1,116 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding of all columns of a row into a single line, so rows with several columns can be read,
+ * snapshotted and prefetched like the lines of the first column.
+ *
+ * The columns are separated by tabs. Backslashes, tabs and line breaks within values are escaped by a backslash,
+ * <code>null</code> is encoded as <code>\N</code>.
+ */
+final class JdbcColumns {
+   /**
+    * Separator of the columns.
+    */
+   private static final char SEPARATOR = '\t';
+
+   /**
+    * Escape character.
+    */
+   private static final char ESCAPE = '\\';
+
+   /**
+    * No instances.
+    */
+   private JdbcColumns() {
+   }
+
+   /**
+    * Encode all columns of the current row of a result set.
+    *
+    * @param resultSet
+    *           Result set.
+    * @return Line.
+    */
+   static String encode(ResultSet resultSet) throws SQLException {
+      int columns = resultSet.getMetaData().getColumnCount();
+      StringBuilder result = new StringBuilder();
+      for (int i = 1; i <= columns; i++) {
+         if (i > 1) {
+            result.append(SEPARATOR);
+         }
+         String value = resultSet.getString(i);
+         if (value == null) {
+            result.append(ESCAPE).append('N');
+            continue;
+         }
+         for (int j = 0; j < value.length(); j++) {
+            char c = value.charAt(j);
+            switch (c) {
+               case ESCAPE:
+                  result.append(ESCAPE).append(ESCAPE);
+                  break;
+               case SEPARATOR:
+                  result.append(ESCAPE).append('t');
+                  break;
+               case '\n':
+                  result.append(ESCAPE).append('n');
+                  break;
+               case '\r':
+                  result.append(ESCAPE).append('r');
+                  break;
+               default:
+                  result.append(c);
+            }
+         }
+      }
+      return result.toString();
+   }
+
+   /**
+    * Decode the columns of a line.
+    *
+    * @param line
+    *           Line.
+    * @return Values of the columns, <code>null</code> for null values.
+    */
+   static List<String> decode(String line) {
+      List<String> result = new ArrayList<>();
+      StringBuilder value = new StringBuilder();
+      boolean isNull = false;
+      for (int i = 0; i < line.length(); i++) {
+         char c = line.charAt(i);
+         if (c == SEPARATOR) {
+            result.add(isNull ? null : value.toString());
+            value.setLength(0);
+            isNull = false;
+         } else if (c == ESCAPE && i + 1 < line.length()) {
+            char escaped = line.charAt(++i);
+            switch (escaped) {
+               case 'N':
+                  isNull = true;
+                  break;
+               case 't':
+                  value.append(SEPARATOR);
+                  break;
+               case 'n':
+                  value.append('\n');
+                  break;
+               case 'r':
+                  value.append('\r');
+                  break;
+               default:
+                  value.append(escaped);
+            }
+         } else {
+            value.append(c);
+         }
+      }
+      result.add(isNull ? null : value.toString());
+      return result;
+   }
+}
@@ -0,0 +1,441 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.Accountable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Holder of a dictionary compiled from the data of a {@link JdbcReader}.
+ * A new version of the dictionary is compiled aside and published by an atomic swap,
+ * so readers never block and always see a completely compiled version.
+ * If compiling fails, the last good version is kept.
+ *
+ * Compiled versions are shared between all cores and field types via the {@link JdbcDictionaryCache},
+ * if the reader provides an identity of its data.
+ *
+ * If the reader provides a snapshot, the first version is compiled from the snapshot
+ * and refreshed from the database in the background.
+ *
+ * If the reader provides a {@link JdbcReloadLimiter}, reloads exceeding its limits are deferred
+ * and coalesced into at most one pending reload.
+ *
+ * If the reader provides a {@link JdbcRefreshSchedule}, the dictionary is refreshed periodically in the background.
+ * The refreshes stop, when the dictionary is no longer used.
+ *
+ * @param <T>
+ *           Type of compiled dictionary.
+ */
+class JdbcDictionary<T> {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(JdbcDictionary.class);
+
+   /**
+    * Maximum number of dictionaries refreshed concurrently in the background, so a slow refresh does not delay
+    * the periodic refreshes, deferred reloads and snapshot refreshes of the other dictionaries.
+    */
+   private static final int THREADS = 4;
+
+   /**
+    * Executor for refreshing dictionaries in the background, shared by all dictionaries.
+    */
+   private static final ScheduledExecutorService refresher = Executors.newScheduledThreadPool(THREADS,
+         new ThreadFactoryBuilder().setNameFormat("jdbc-dictionary-refresher-%d").setDaemon(true).build());
+
+   /**
+    * Compiler for dictionaries.
+    *
+    * @param <T>
+    *           Type of compiled dictionary.
+    */
+   @FunctionalInterface
+   interface Compiler<T> {
+      /**
+       * Compile the dictionary.
+       *
+       * @param loader
+       *           Resource loader.
+       * @param reader
+       *           Reader to load the data from.
+       * @return Compiled dictionary, never <code>null</code>.
+       */
+      T compile(ResourceLoader loader, JdbcReader reader) throws IOException;
+   }
+
+   /**
+    * Name of the dictionary for logging.
+    */
+   private final String name;
+
+   /**
+    * Database based reader.
+    */
+   private final JdbcReader reader;
+
+   /**
+    * Compiler for the dictionary.
+    */
+   private final Compiler<T> compiler;
+
+   /**
+    * Key of the dictionary in the {@link JdbcDictionaryCache}. Null, if not shared.
+    */
+   private final Object key;
+
+   /**
+    * Limiter for reloads. Null, if reloads are not limited.
+    */
+   private final JdbcReloadLimiter limiter;
+
+   /**
+    * Schedule for refreshing the dictionary periodically. Null, if not refreshed periodically.
+    */
+   private final JdbcRefreshSchedule schedule;
+
+   /**
+    * Resource loader for periodic refreshes. Null, if not loaded yet.
+    */
+   private volatile ResourceLoader refreshLoader;
+
+   /**
+    * Is a deferred reload pending?.
+    */
+   private final AtomicBoolean pending = new AtomicBoolean();
+
+   /**
+    * Current version of the dictionary.
+    */
+   private final AtomicReference<T> dictionary = new AtomicReference<>();
+
+   /**
+    * Fingerprint of the current version of the dictionary.
+    */
+   private volatile String fingerprint;
+
+   /**
+    * Constructor.
+    *
+    * @param name
+    *           Name of the dictionary for logging.
+    * @param reader
+    *           Database based reader.
+    * @param compiler
+    *           Compiler for the dictionary.
+    * @param options
+    *           All options influencing the compiled dictionary.
+    */
+   JdbcDictionary(String name, JdbcReader reader, Compiler<T> compiler, Object options) {
+      this.name = checkNotNull(name);
+      this.reader = checkNotNull(reader);
+      this.compiler = checkNotNull(compiler);
+      Object identity = reader.getIdentity();
+      this.key = identity != null ? Arrays.asList(identity, options) : null;
+      this.limiter = reader.getReloadLimiter();
+      this.schedule = reader.getRefreshSchedule();
+   }
+
+   /**
+    * @return Current version of the dictionary, never <code>null</code>.
+    */
+   T get() {
+      T result = dictionary.get();
+      checkState(result != null, "The " + name + " have not been loaded yet.");
+      return result;
+   }
+
+   /**
+    * @return Whether a version of the dictionary has been loaded.
+    */
+   boolean isLoaded() {
+      return dictionary.get() != null;
+   }
+
+   /**
+    * Compile and publish a new version of the dictionary.
+    * Afterwards the reader may release resources held for the load, see {@link JdbcReader#loaded()}.
+    *
+    * @param loader
+    *           Resource loader.
+    */
+   synchronized void load(ResourceLoader loader) throws IOException {
+      try {
+         doLoad(loader);
+      } finally {
+         reader.loaded();
+      }
+   }
+
+   /**
+    * Compile and publish a new version of the dictionary.
+    *
+    * @param loader
+    *           Resource loader.
+    */
+   private void doLoad(ResourceLoader loader) throws IOException {
+      if (schedule != null && refreshLoader == null) {
+         refreshLoader = loader;
+         refresher.schedule(new ScheduledRefresh(this), schedule.nextDelay(), TimeUnit.MILLISECONDS);
+      }
+
+      JdbcReader snapshot = dictionary.get() == null ? reader.getSnapshot() : null;
+      if (snapshot != null) {
+         try {
+            dictionary.set(compile(() -> compiler.compile(loader, snapshot)));
+            this.fingerprint = snapshot.getFingerprint();
+            logger.info("Loaded the {} from a snapshot, refreshing them in the background.", name);
+            refresher.execute(() -> refresh(loader));
+            return;
+         } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load the {} from a snapshot: {}.", name, e.getMessage());
+         }
+      }
+
+      publish(loader, reader.getFingerprint());
+   }
+
+   /**
+    * Compile and publish a new version of the dictionary, if the data has changed since the last load.
+    * If the limits of the reloads have been exceeded, the reload is deferred.
+    *
+    * @param loader
+    *           Resource loader.
+    */
+   void reload(ResourceLoader loader) throws IOException {
+      long wait = limiter != null ? limiter.tryAcquire() : 0;
+      if (wait > 0) {
+         defer(loader, wait);
+         return;
+      }
+
+      doReload(loader);
+   }
+
+   /**
+    * Defer a reload. Coalesces it with an already pending reload.
+    *
+    * @param loader
+    *           Resource loader.
+    * @param wait
+    *           Time in ms to defer the reload.
+    */
+   private void defer(ResourceLoader loader, long wait) {
+      if (!pending.compareAndSet(false, true)) {
+         logger.debug("A reload of the {} is pending already.", name);
+         return;
+      }
+
+      logger.info("Deferring reload of the {} by {} ms.", name, wait);
+      refresher.schedule(() -> {
+         pending.set(false);
+         refresh(loader);
+      }, wait, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Compile and publish a new version of the dictionary, if the data has changed since the last load.
+    *
+    * @param loader
+    *           Resource loader.
+    */
+   private synchronized void doReload(ResourceLoader loader) throws IOException {
+      String current = reader.getFingerprint();
+      if (current != null && current.equals(fingerprint) && dictionary.get() != null) {
+         logger.info("The {} are unchanged, skipping reload.", name);
+         return;
+      }
+
+      publish(loader, current);
+   }
+
+   /**
+    * Reload in the background.
+    *
+    * @param loader
+    *           Resource loader.
+    */
+   private void refresh(ResourceLoader loader) {
+      try {
+         reload(loader);
+      } catch (IOException | RuntimeException e) {
+         logger.error("Failed to refresh the {}.", name, e);
+      }
+   }
+
+   /**
+    * Compile and publish a new version of the dictionary.
+    *
+    * @param loader
+    *           Resource loader.
+    * @param fingerprint
+    *           Fingerprint of the data, queried before loading it.
+    */
+   private void publish(ResourceLoader loader, String fingerprint) throws IOException {
+      JdbcReader fingerprinted = new FingerprintedReader(reader, fingerprint);
+      T compiled;
+      if (key != null) {
+         compiled = compile(() -> JdbcDictionaryCache.get(key, fingerprint,
+               () -> compiler.compile(loader, fingerprinted)));
+      } else {
+         compiled = compile(() -> compiler.compile(loader, fingerprinted));
+      }
+      dictionary.set(compiled);
+      this.fingerprint = fingerprint;
+   }
+
+   /**
+    * Compile a new version of the dictionary and record the load in the statistics of the reader.
+    * The RAM usage is known, if the compiled dictionary is {@link Accountable}.
+    *
+    * @param compilation
+    *           Compilation.
+    * @return Compiled dictionary, never <code>null</code>.
+    */
+   private T compile(JdbcDictionaryCache.Compilation<T> compilation) throws IOException {
+      JdbcLoadStatistics statistics = reader.getLoadStatistics();
+      if (statistics == null) {
+         return checkNotNull(compilation.compile());
+      }
+
+      long start = System.nanoTime();
+      try {
+         T compiled = checkNotNull(compilation.compile());
+         long ramBytes = compiled instanceof Accountable ? ((Accountable) compiled).ramBytesUsed() : -1;
+         statistics.succeeded(System.nanoTime() - start, ramBytes);
+         return compiled;
+      } catch (IOException | RuntimeException e) {
+         statistics.failed();
+         throw e;
+      }
+   }
+
+   /**
+    * View of a reader, which passes the fingerprint queried before loading to {@link JdbcReader#getReader(String)},
+    * so it is not queried again, e.g. for recording a snapshot.
+    */
+   private static final class FingerprintedReader implements JdbcReader {
+      /**
+       * Database based reader.
+       */
+      private final JdbcReader reader;
+
+      /**
+       * Fingerprint of the data, queried before loading it.
+       */
+      private final String fingerprint;
+
+      /**
+       * Constructor.
+       *
+       * @param reader
+       *           Database based reader.
+       * @param fingerprint
+       *           Fingerprint of the data, queried before loading it.
+       */
+      private FingerprintedReader(JdbcReader reader, String fingerprint) {
+         this.reader = reader;
+         this.fingerprint = fingerprint;
+      }
+
+      @Override
+      public Reader getReader() {
+         return reader.getReader(fingerprint);
+      }
+
+      @Override
+      public QueryRunner getJdbcRunner() {
+         return reader.getJdbcRunner();
+      }
+
+      @Override
+      public String getSql() {
+         return reader.getSql();
+      }
+
+      @Override
+      public String getFingerprint() {
+         return fingerprint;
+      }
+
+      @Override
+      public Object getIdentity() {
+         return reader.getIdentity();
+      }
+
+      @Override
+      public JdbcReader getSnapshot() {
+         return reader.getSnapshot();
+      }
+
+      @Override
+      public JdbcLoadStatistics getLoadStatistics() {
+         return reader.getLoadStatistics();
+      }
+
+      @Override
+      public JdbcReloadLimiter getReloadLimiter() {
+         return reader.getReloadLimiter();
+      }
+
+      @Override
+      public JdbcRefreshSchedule getRefreshSchedule() {
+         return reader.getRefreshSchedule();
+      }
+
+      @Override
+      public void loaded() {
+         reader.loaded();
+      }
+   }
+
+   /**
+    * Periodic refresh of a dictionary. References the dictionary weakly,
+    * so the refreshes stop, when the dictionary is no longer used, e.g. because its core has been closed.
+    */
+   private static final class ScheduledRefresh implements Runnable {
+      /**
+       * Dictionary.
+       */
+      private final WeakReference<JdbcDictionary<?>> dictionary;
+
+      /**
+       * Constructor.
+       *
+       * @param dictionary
+       *           Dictionary.
+       */
+      private ScheduledRefresh(JdbcDictionary<?> dictionary) {
+         this.dictionary = new WeakReference<>(dictionary);
+      }
+
+      @Override
+      public void run() {
+         JdbcDictionary<?> current = dictionary.get();
+         if (current == null) {
+            logger.debug("Dictionary is no longer used, stopping its refreshes.");
+            return;
+         }
+
+         logger.info("Refreshing the {} periodically.", current.name);
+         current.refresh(current.refreshLoader);
+         refresher.schedule(this, current.schedule.nextDelay(), TimeUnit.MILLISECONDS);
+      }
+   }
+}
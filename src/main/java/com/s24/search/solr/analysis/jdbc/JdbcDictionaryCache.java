@@ -0,0 +1,153 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * JVM wide cache of compiled dictionaries, shared by all cores and field types.
+ *
+ * Concurrent compilations of the same dictionary with the same fingerprint are coalesced into one.
+ * Without a fingerprint, concurrent compilations of the same dictionary are coalesced as well,
+ * because they load the data at about the same time, e.g. when the replicas of a collection reload at once.
+ * Compiled dictionaries with a known fingerprint are reused as long as any core still uses them:
+ * They are referenced weakly, so they get dropped when the last user has swapped them out or has been closed.
+ * Compiled dictionaries without a fingerprint are never reused, because their data may have changed since.
+ */
+final class JdbcDictionaryCache {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(JdbcDictionaryCache.class);
+
+   /**
+    * Compilations in flight by key and fingerprint.
+    */
+   private static final ConcurrentMap<Object, CompletableFuture<Object>> compiling = new ConcurrentHashMap<>();
+
+   /**
+    * Compiled dictionaries by key and fingerprint.
+    */
+   private static final Cache<Object, Object> compiled = CacheBuilder.newBuilder().weakValues().build();
+
+   /**
+    * Compilation of a dictionary.
+    *
+    * @param <T>
+    *           Type of compiled dictionary.
+    */
+   @FunctionalInterface
+   interface Compilation<T> {
+      /**
+       * @return Compiled dictionary, never <code>null</code>.
+       */
+      T compile() throws IOException;
+   }
+
+   /**
+    * No instances.
+    */
+   private JdbcDictionaryCache() {
+   }
+
+   /**
+    * Get a compiled dictionary.
+    * Reuses a compiled dictionary or joins a running compilation with the same key and fingerprint.
+    * Without a fingerprint, just joins a running compilation with the same key and no fingerprint.
+    *
+    * @param key
+    *           Key of the dictionary: Data source, SQL and options for compiling.
+    * @param fingerprint
+    *           Fingerprint of the data. If null, compiled dictionaries are not reused.
+    * @param compilation
+    *           Compilation of the dictionary.
+    * @return Compiled dictionary.
+    */
+   static <T> T get(Object key, String fingerprint, Compilation<T> compilation) throws IOException {
+      checkNotNull(key);
+      checkNotNull(compilation);
+
+      Object version = Arrays.asList(key, fingerprint);
+      Object cached = fingerprint != null ? compiled.getIfPresent(version) : null;
+      if (cached != null) {
+         logger.info("Reusing compiled dictionary {}.", fingerprint);
+         return cast(cached);
+      }
+
+      CompletableFuture<Object> future = new CompletableFuture<>();
+      CompletableFuture<Object> running = compiling.putIfAbsent(version, future);
+      if (running != null) {
+         logger.info("Joining running compilation of dictionary {}.", fingerprint);
+         return join(running);
+      }
+
+      try {
+         T result = checkNotNull(compilation.compile());
+         if (fingerprint != null) {
+            compiled.put(version, result);
+         }
+         future.complete(result);
+         return result;
+
+      } catch (IOException | RuntimeException e) {
+         future.completeExceptionally(e);
+         throw e;
+
+      } finally {
+         compiling.remove(version, future);
+      }
+   }
+
+   /**
+    * Wait for a running compilation.
+    *
+    * @param running
+    *           Running compilation.
+    * @return Compiled dictionary.
+    */
+   private static <T> T join(CompletableFuture<Object> running) throws IOException {
+      try {
+         return cast(running.get());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while waiting for the dictionary.", e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+         }
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new IOException("Failed to compile the dictionary.", e.getCause());
+      }
+   }
+
+   /**
+    * Cast compiled dictionary. The key includes the options and thus the type of the dictionary.
+    */
+   @SuppressWarnings("unchecked")
+   private static <T> T cast(Object dictionary) {
+      return (T) dictionary;
+   }
+
+   /**
+    * Remove all compiled dictionaries.
+    * Just for testing purposes!
+    */
+   @VisibleForTesting
+   static void clear() {
+      compiled.invalidateAll();
+   }
+}
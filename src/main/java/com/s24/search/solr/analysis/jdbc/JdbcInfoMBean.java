@@ -0,0 +1,56 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.net.URL;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrInfoMBean;
+
+/**
+ * {@link SolrInfoMBean} reporting the {@link JdbcLoadStatistics} of a component loading its data via a {@link JdbcReader}.
+ *
+ * Solr registers analysis factories implementing {@link SolrInfoMBean} in the info registry of the core,
+ * so the statistics are available via the mbeans handler and JMX.
+ */
+interface JdbcInfoMBean extends SolrInfoMBean {
+   /**
+    * @return Reader, whose loads are reported.
+    */
+   JdbcReader getJdbcReader();
+
+   @Override
+   default String getName() {
+      return getClass().getName() + ":" + getJdbcReader().getSql();
+   }
+
+   @Override
+   default String getVersion() {
+      return getClass().getPackage().getImplementationVersion();
+   }
+
+   @Override
+   default String getDescription() {
+      return "Loads data via " + getJdbcReader().getSql();
+   }
+
+   @Override
+   default Category getCategory() {
+      return Category.OTHER;
+   }
+
+   @Override
+   default String getSource() {
+      return null;
+   }
+
+   @Override
+   default URL[] getDocs() {
+      return null;
+   }
+
+   @Override
+   default NamedList getStatistics() {
+      JdbcLoadStatistics statistics = getJdbcReader().getLoadStatistics();
+      return statistics != null ? statistics.toNamedList() : new SimpleOrderedMap<>();
+   }
+}
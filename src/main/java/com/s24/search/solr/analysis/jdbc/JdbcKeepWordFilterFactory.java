@@ -2,23 +2,41 @@ package com.s24.search.solr.analysis.jdbc;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.miscellaneous.KeepWordFilterFactory;
+import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.Accountable;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import com.s24.search.solr.analysis.SearcherAware;
 
 /**
  * A jdbc based keep word filter
+ *
+ * Each version of the keep words is compiled by a separate {@link KeepWordFilterFactory}
+ * and published atomically, so reloads never affect concurrent analysis.
  * 
  * @author Shopping24 GmbH, Torsten Bøgh Köster (@tboeghk)
  */
-public class JdbcKeepWordFilterFactory extends KeepWordFilterFactory {
+public class JdbcKeepWordFilterFactory extends KeepWordFilterFactory implements SearcherAware, JdbcInfoMBean {
 
    /**
     * Database based reader.
     */
    private final JdbcReader reader;
 
+   /**
+    * Keep words, compiled into a {@link KeepWordFilterFactory}.
+    */
+   private final JdbcDictionary<KeepWordFilterFactory> keepWords;
+
    public JdbcKeepWordFilterFactory(Map<String, String> args) {
       this(args, JdbcReaderFactory.createFromSolrParams(args, "words"));
    }
@@ -30,6 +48,27 @@ public class JdbcKeepWordFilterFactory extends KeepWordFilterFactory {
       super(args);
 
       this.reader = reader;
+      this.keepWords = new JdbcDictionary<>("keep words", reader, this::compile,
+            Arrays.asList(getClass(), getOriginalArgs()));
+   }
+
+   @Override
+   public TokenStream create(TokenStream input) {
+      return keepWords.get().create(input);
+   }
+
+   @Override
+   public CharArraySet getWords() {
+      return keepWords.get().getWords();
+   }
+
+   @Override
+   public void inform(SolrIndexSearcher searcher) {
+      try {
+         keepWords.reload(searcher.getCore().getResourceLoader());
+      } catch (IOException e) {
+         throw new IllegalArgumentException("Failed to notify about new searcher.", e);
+      }
    }
 
    /**
@@ -37,7 +76,50 @@ public class JdbcKeepWordFilterFactory extends KeepWordFilterFactory {
     */
    @Override
    public void inform(ResourceLoader loader) throws IOException {
-      super.inform(new JdbcResourceLoader(loader, reader, StandardCharsets.UTF_8));
+      keepWords.load(loader);
    }
 
+   @Override
+   public JdbcReader getJdbcReader() {
+      return reader;
+   }
+
+   /**
+    * Compile the keep words into a new {@link KeepWordFilterFactory}.
+    *
+    * @param loader
+    *           Resource loader.
+    * @param reader
+    *           Reader for keep words.
+    */
+   private KeepWordFilterFactory compile(ResourceLoader loader, JdbcReader reader) throws IOException {
+      KeepWordFilterFactory factory = new CompiledKeepWordFilterFactory(new HashMap<>(getOriginalArgs()));
+      factory.inform(new JdbcResourceLoader(loader, reader, StandardCharsets.UTF_8));
+      return factory;
+   }
+
+   /**
+    * {@link KeepWordFilterFactory} which reports the RAM usage of its keep words.
+    */
+   private static class CompiledKeepWordFilterFactory extends KeepWordFilterFactory implements Accountable {
+      /**
+       * Constructor.
+       *
+       * @param args
+       *           Configuration.
+       */
+      CompiledKeepWordFilterFactory(Map<String, String> args) {
+         super(args);
+      }
+
+      @Override
+      public long ramBytesUsed() {
+         return getWords() != null ? JdbcLoadStatistics.ramBytesUsed(getWords()) : 0;
+      }
+
+      @Override
+      public Collection<Accountable> getChildResources() {
+         return Collections.emptyList();
+      }
+   }
 }
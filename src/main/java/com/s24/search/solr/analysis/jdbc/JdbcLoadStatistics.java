@@ -0,0 +1,172 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Statistics about the loads of a {@link JdbcReader}.
+ *
+ * The phases of the current load are collected by the reader (connect, execute, fetch)
+ * and the resource loader (bytes). When the load succeeds, they are published as the last load.
+ * The phases are collected since the end of the previous load, so phases of a prefetch count to the load consuming it.
+ * The build phase is the remaining time of the load, e.g. for compiling a FST.
+ */
+public final class JdbcLoadStatistics {
+   /**
+    * Number of successful loads.
+    */
+   private long loads = 0;
+
+   /**
+    * Number of failed loads.
+    */
+   private long failures = 0;
+
+   /**
+    * Time of the last successful load in ms since epoch. 0, if there has been no successful load yet.
+    */
+   private long lastSuccess = 0;
+
+   /**
+    * Durations of the connect, execute and fetch phases of the current load in ns.
+    */
+   private long connect, execute, fetch;
+
+   /**
+    * Rows and bytes loaded by the current load.
+    */
+   private long rows, bytes;
+
+   /**
+    * Durations of the last successful load in ns.
+    */
+   private long lastLoad, lastConnect, lastExecute, lastFetch, lastBuild;
+
+   /**
+    * Rows and bytes loaded by the last successful load.
+    */
+   private long lastRows, lastBytes;
+
+   /**
+    * RAM used by the data of the last successful load. -1, if unknown.
+    */
+   private long ramBytes = -1;
+
+   /**
+    * The connection to the database has been established.
+    *
+    * @param nanos
+    *           Duration in ns.
+    */
+   synchronized void connected(long nanos) {
+      connect += nanos;
+   }
+
+   /**
+    * The SQL has been executed.
+    *
+    * @param nanos
+    *           Duration in ns.
+    */
+   synchronized void executed(long nanos) {
+      execute += nanos;
+   }
+
+   /**
+    * Rows have been fetched.
+    *
+    * @param nanos
+    *           Duration in ns.
+    * @param rows
+    *           Number of rows.
+    */
+   synchronized void fetched(long nanos, long rows) {
+      this.fetch += nanos;
+      this.rows += rows;
+   }
+
+   /**
+    * The data has been read.
+    *
+    * @param bytes
+    *           Number of bytes.
+    */
+   synchronized void read(long bytes) {
+      this.bytes = bytes;
+   }
+
+   /**
+    * The current load failed.
+    */
+   synchronized void failed() {
+      failures++;
+      reset();
+   }
+
+   /**
+    * The current load succeeded.
+    *
+    * @param nanos
+    *           Duration of the whole load in ns.
+    * @param ramBytes
+    *           RAM used by the loaded data. -1, if unknown.
+    */
+   synchronized void succeeded(long nanos, long ramBytes) {
+      loads++;
+      lastSuccess = System.currentTimeMillis();
+      lastLoad = nanos;
+      lastConnect = connect;
+      lastExecute = execute;
+      lastFetch = fetch;
+      lastBuild = Math.max(0, nanos - connect - execute - fetch);
+      lastRows = rows;
+      lastBytes = bytes;
+      this.ramBytes = ramBytes;
+      reset();
+   }
+
+   /**
+    * Reset the phases of the current load.
+    */
+   private void reset() {
+      connect = execute = fetch = rows = bytes = 0;
+   }
+
+   /**
+    * @return Statistics for {@link org.apache.solr.core.SolrInfoMBean#getStatistics()}.
+    */
+   public synchronized NamedList<Object> toNamedList() {
+      NamedList<Object> result = new SimpleOrderedMap<>();
+      result.add("loads", loads);
+      result.add("failures", failures);
+      result.add("millisSinceLastSuccess", lastSuccess > 0 ? System.currentTimeMillis() - lastSuccess : -1);
+      result.add("lastLoadMillis", TimeUnit.NANOSECONDS.toMillis(lastLoad));
+      result.add("lastConnectMillis", TimeUnit.NANOSECONDS.toMillis(lastConnect));
+      result.add("lastExecuteMillis", TimeUnit.NANOSECONDS.toMillis(lastExecute));
+      result.add("lastFetchMillis", TimeUnit.NANOSECONDS.toMillis(lastFetch));
+      result.add("lastBuildMillis", TimeUnit.NANOSECONDS.toMillis(lastBuild));
+      result.add("lastRows", lastRows);
+      result.add("lastBytes", lastBytes);
+      result.add("ramBytes", ramBytes);
+      return result;
+   }
+
+   /**
+    * Estimate RAM used by a {@link CharArraySet}: Its entries and the references to them.
+    *
+    * @param set
+    *           Set.
+    * @return RAM in bytes.
+    */
+   static long ramBytesUsed(CharArraySet set) {
+      long result = 0;
+      for (Object entry : set) {
+         result += RamUsageEstimator.sizeOf((char[]) entry) + 4 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+      }
+      return result;
+   }
+}
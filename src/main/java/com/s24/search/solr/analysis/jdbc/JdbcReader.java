@@ -15,6 +15,18 @@ public interface JdbcReader {
     */
    Reader getReader();
 
+   /**
+    * Like {@link #getReader()}, but with the fingerprint of the data, which the caller has just queried.
+    * Saves readers which need the fingerprint together with the data from querying it again.
+    *
+    * @param fingerprint
+    *           fingerprint of the data, see {@link #getFingerprint()}. <code>null</code>, if not available.
+    * @return a {@linkplain Reader}, never <code>null</code>
+    */
+   default Reader getReader(String fingerprint) {
+      return getReader();
+   }
+
    /**
     * @return direct {@link QueryRunner} to execute query. If no datasource is defined, it could be null.
     */
@@ -24,4 +36,57 @@ public interface JdbcReader {
     * @return plain SQL query.
     */
    String getSql();
+
+   /**
+    * @return fingerprint of the current data, e.g. the last modification and the number of rows.
+    *         Has to change, whenever the data changes. <code>null</code>, if not available.
+    */
+   default String getFingerprint() {
+      return null;
+   }
+
+   /**
+    * @return identity of the data, e.g. data source and SQL, to share dictionaries compiled from it between cores.
+    *         <code>null</code>, if the data must not be shared.
+    */
+   default Object getIdentity() {
+      return null;
+   }
+
+   /**
+    * @return reader for the last snapshot of the data, providing the fingerprint of the snapshot.
+    *         <code>null</code>, if there is no snapshot.
+    */
+   default JdbcReader getSnapshot() {
+      return null;
+   }
+
+   /**
+    * @return statistics about the loads of this reader. <code>null</code>, if not available.
+    */
+   default JdbcLoadStatistics getLoadStatistics() {
+      return null;
+   }
+
+   /**
+    * @return limiter for reloads of dictionaries using this reader. <code>null</code>, if reloads are not limited.
+    */
+   default JdbcReloadLimiter getReloadLimiter() {
+      return null;
+   }
+
+   /**
+    * @return schedule for refreshing dictionaries using this reader periodically.
+    *         <code>null</code>, if they are not refreshed periodically.
+    */
+   default JdbcRefreshSchedule getRefreshSchedule() {
+      return null;
+   }
+
+   /**
+    * Called after the first load of a dictionary using this reader has finished, whether the data has been read or not,
+    * e.g. to release data prefetched for it.
+    */
+   default void loaded() {
+   }
 }
@@ -1,5 +1,6 @@
 package com.s24.search.solr.analysis.jdbc;
 
+import java.nio.file.Paths;
 import java.util.Map;
 
 import javax.sql.DataSource;
@@ -41,11 +42,54 @@ public class JdbcReaderFactory {
          config.put(originalParamName, JdbcResourceLoader.DATABASE);
       }
 
+      String dataSourceName = config.get(JdbcReaderFactoryParams.DATASOURCE);
       DataSource dataSource = JdbcDataSourceFactory.getDataSource(config);
       String sql = config.remove(JdbcReaderFactoryParams.SQL);
       String ignoreString = config.remove(JdbcReaderFactoryParams.IGNORE);
       boolean ignore = !"false".equals(ignoreString);
+      String fetchSizeString = config.remove(JdbcReaderFactoryParams.FETCH_SIZE);
+      int fetchSize = fetchSizeString != null ? Integer.parseInt(fetchSizeString) : 0;
+      String fingerprintSql = config.remove(JdbcReaderFactoryParams.FINGERPRINT_SQL);
+      String keyColumn = config.remove(JdbcReaderFactoryParams.KEY_COLUMN);
+      String pageSizeString = config.remove(JdbcReaderFactoryParams.PAGE_SIZE);
+      int pageSize = pageSizeString != null ? Integer.parseInt(pageSizeString) : 10000;
+      String partitionsString = config.remove(JdbcReaderFactoryParams.PARTITIONS);
+      int partitions = partitionsString != null ? Integer.parseInt(partitionsString) : 0;
+      String minReloadIntervalString = config.remove(JdbcReaderFactoryParams.MIN_RELOAD_INTERVAL);
+      long minReloadInterval = minReloadIntervalString != null ? Long.parseLong(minReloadIntervalString) : 0;
+      String maxReloadsString = config.remove(JdbcReaderFactoryParams.MAX_RELOADS_PER_MINUTE);
+      int maxReloads = maxReloadsString != null ? Integer.parseInt(maxReloadsString) : 0;
+      String refreshIntervalString = config.remove(JdbcReaderFactoryParams.REFRESH_INTERVAL);
+      long refreshInterval = refreshIntervalString != null ? Long.parseLong(refreshIntervalString) : 0;
+      String refreshJitterString = config.remove(JdbcReaderFactoryParams.REFRESH_JITTER);
+      long refreshJitter = refreshJitterString != null ? Long.parseLong(refreshJitterString) : refreshInterval / 10;
+      String snapshotDir = config.remove(JdbcReaderFactoryParams.SNAPSHOT_DIR);
+      boolean prefetch = "true".equals(config.remove(JdbcReaderFactoryParams.PREFETCH));
 
-      return new SimpleJdbcReader(dataSource, sql, ignore);
+      SimpleJdbcReader simpleReader;
+      if (partitions > 0) {
+         Preconditions.checkArgument(keyColumn == null,
+               "Partitioned loading can't be combined with keyset pagination.");
+         simpleReader = new PartitionedJdbcReader(dataSource, sql, ignore, fetchSize, fingerprintSql, partitions);
+      } else {
+         simpleReader = new SimpleJdbcReader(dataSource, sql, ignore, fetchSize, fingerprintSql, keyColumn, pageSize);
+      }
+      if ("true".equals(config.get(JdbcReaderFactoryParams.STRUCTURED))) {
+         // Structured synonyms are read from several columns.
+         simpleReader.readColumns();
+      }
+      simpleReader.limitReloads(minReloadInterval, maxReloads);
+      simpleReader.refreshPeriodically(refreshInterval, refreshJitter);
+
+      JdbcReader reader = simpleReader;
+      if (snapshotDir != null) {
+         reader = new SnapshotJdbcReader(reader, Paths.get(snapshotDir), dataSourceName);
+      }
+      if (prefetch && fetchSize > 0) {
+         log.warn("Prefetching is disabled for streamed data: {}.", sql);
+      } else if (prefetch) {
+         reader = new PrefetchingJdbcReader(reader);
+      }
+      return reader;
    }
 }
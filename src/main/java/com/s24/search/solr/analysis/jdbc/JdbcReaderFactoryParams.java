@@ -22,4 +22,73 @@ public interface JdbcReaderFactoryParams {
     * Parameter: Ignore a missing database?.
     */
    String IGNORE = "ignoreMissingDatabase";
+
+   /**
+    * Parameter: Fetch size for streaming the result of the SQL. If not set, the whole result is loaded at once.
+    */
+   String FETCH_SIZE = "fetchSize";
+
+   /**
+    * Parameter: Name of a unique, not null key column in the result of the SQL, to load the result page by page
+    * via keyset pagination. If not set, the whole result is loaded by one query.
+    */
+   String KEY_COLUMN = "keyColumn";
+
+   /**
+    * Parameter: Maximum number of rows per page for keyset pagination. Defaults to 10000.
+    */
+   String PAGE_SIZE = "pageSize";
+
+   /**
+    * Parameter: Number of partitions to load concurrently, each via a separate connection.
+    * The SQL has to contain the placeholders <code>{partition}</code> and optionally <code>{partitions}</code>,
+    * e.g. <code>SELECT line FROM synonyms WHERE mod(id, {partitions}) = {partition}</code>.
+    */
+   String PARTITIONS = "partitions";
+
+   /**
+    * Parameter: Does the SQL return synonyms as columns (input, output, optional includeOrig)
+    * instead of lines in the Solr synonym format?. Just for the synonym filter.
+    */
+   String STRUCTURED = "structured";
+
+   /**
+    * Parameter: SQL to load a fingerprint of the data, e.g. <code>SELECT max(updated_at), count(*) FROM synonyms</code>.
+    * If the fingerprint did not change, reloads on new searchers are skipped.
+    */
+   String FINGERPRINT_SQL = "fingerprintSql";
+
+   /**
+    * Parameter: Directory for snapshots of the data, e.g. <code>${solr.core.dataDir}/jdbc</code>.
+    * Snapshots are used during startup and if the database is missing.
+    */
+   String SNAPSHOT_DIR = "snapshotDir";
+
+   /**
+    * Parameter: Start loading the data in the background as soon as the filter factory has been created?.
+    * The prefetched data is kept in memory, so it is not combined with {@link #FETCH_SIZE}.
+    */
+   String PREFETCH = "prefetch";
+
+   /**
+    * Parameter: Minimum interval in ms between two reloads of the dictionary on new searchers.
+    * Reloads within the interval are deferred and coalesced into at most one pending reload.
+    */
+   String MIN_RELOAD_INTERVAL = "minReloadInterval";
+
+   /**
+    * Parameter: Maximum number of reloads per minute of all dictionaries using the same data source.
+    * Reloads exceeding the limit are deferred and coalesced into at most one pending reload per dictionary.
+    */
+   String MAX_RELOADS_PER_MINUTE = "maxReloadsPerMinute";
+
+   /**
+    * Parameter: Interval in ms for refreshing the dictionary periodically in the background, independent of new searchers.
+    */
+   String REFRESH_INTERVAL = "refreshInterval";
+
+   /**
+    * Parameter: Maximum random jitter in ms added to the refresh interval. Defaults to a tenth of the interval.
+    */
+   String REFRESH_JITTER = "refreshJitter";
 }
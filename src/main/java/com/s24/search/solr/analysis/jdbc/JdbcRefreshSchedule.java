@@ -0,0 +1,44 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Schedule for refreshing a dictionary periodically, independent of new searchers.
+ * Each refresh is delayed by the interval plus a random jitter, so the refreshes of several dictionaries,
+ * cores and replicas spread over time instead of hitting the database at once.
+ */
+final class JdbcRefreshSchedule {
+   /**
+    * Interval between two refreshes in ms.
+    */
+   private final long interval;
+
+   /**
+    * Maximum random jitter added to the interval in ms.
+    */
+   private final long jitter;
+
+   /**
+    * Constructor.
+    *
+    * @param interval
+    *           Interval between two refreshes in ms.
+    * @param jitter
+    *           Maximum random jitter added to the interval in ms.
+    */
+   JdbcRefreshSchedule(long interval, long jitter) {
+      checkArgument(interval > 0, "The refresh interval has to be positive.");
+      checkArgument(jitter >= 0, "The refresh jitter must not be negative.");
+      this.interval = interval;
+      this.jitter = jitter;
+   }
+
+   /**
+    * @return Delay of the next refresh in ms.
+    */
+   long nextDelay() {
+      return interval + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+   }
+}
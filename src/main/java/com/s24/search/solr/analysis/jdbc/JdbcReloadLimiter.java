@@ -0,0 +1,156 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Limits the reloads of a dictionary: Reloads have to be at least a minimum interval apart
+ * and the reloads of all dictionaries using the same {@link DataSource} are limited by a JVM wide token bucket.
+ * If several dictionaries configure different limits for the same data source, the lowest limit wins.
+ */
+final class JdbcReloadLimiter {
+   /**
+    * Token buckets by data source.
+    */
+   private static final ConcurrentMap<DataSource, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+   /**
+    * Minimum interval between two reloads in ms.
+    */
+   private final long minInterval;
+
+   /**
+    * Token bucket of the data source. Null, if the reloads per data source are not limited.
+    */
+   private final TokenBucket bucket;
+
+   /**
+    * Time of the last reload in ms since epoch.
+    */
+   private long lastReload = 0;
+
+   /**
+    * Constructor.
+    *
+    * @param dataSource
+    *           Data source.
+    * @param minInterval
+    *           Minimum interval between two reloads in ms. If not positive, the interval is not limited.
+    * @param loadsPerMinute
+    *           Maximum number of reloads per minute of all dictionaries using the data source.
+    *           If not positive, the reloads per data source are not limited.
+    */
+   JdbcReloadLimiter(DataSource dataSource, long minInterval, int loadsPerMinute) {
+      checkNotNull(dataSource);
+      this.minInterval = minInterval;
+      if (loadsPerMinute > 0) {
+         this.bucket = buckets.computeIfAbsent(dataSource, key -> new TokenBucket(loadsPerMinute));
+         this.bucket.limit(loadsPerMinute);
+      } else {
+         this.bucket = null;
+      }
+   }
+
+   /**
+    * Try to start a reload.
+    *
+    * @return 0, if the reload may start now. Otherwise the time in ms to wait before trying again.
+    */
+   synchronized long tryAcquire() {
+      long now = System.currentTimeMillis();
+      long wait = lastReload + minInterval - now;
+      if (wait > 0) {
+         return wait;
+      }
+
+      if (bucket != null) {
+         wait = bucket.tryAcquire(now);
+         if (wait > 0) {
+            return wait;
+         }
+      }
+
+      lastReload = now;
+      return 0;
+   }
+
+   /**
+    * Remove all token buckets.
+    * Just for testing purposes!
+    */
+   @VisibleForTesting
+   static void clear() {
+      buckets.clear();
+   }
+
+   /**
+    * Token bucket: Holds at most the tokens for one minute and refills them continuously.
+    */
+   private static final class TokenBucket {
+      /**
+       * Maximum number of tokens per minute.
+       */
+      private int perMinute;
+
+      /**
+       * Available tokens.
+       */
+      private double tokens;
+
+      /**
+       * Time of the last refill in ms since epoch.
+       */
+      private long lastRefill = System.currentTimeMillis();
+
+      /**
+       * Constructor.
+       *
+       * @param perMinute
+       *           Maximum number of tokens per minute.
+       */
+      private TokenBucket(int perMinute) {
+         checkArgument(perMinute > 0, "The number of loads per minute has to be positive.");
+         this.perMinute = perMinute;
+         this.tokens = perMinute;
+      }
+
+      /**
+       * Lower the number of tokens per minute.
+       *
+       * @param perMinute
+       *           Maximum number of tokens per minute.
+       */
+      private synchronized void limit(int perMinute) {
+         if (perMinute < this.perMinute) {
+            this.perMinute = perMinute;
+            this.tokens = Math.min(tokens, perMinute);
+         }
+      }
+
+      /**
+       * Try to take a token.
+       *
+       * @param now
+       *           Current time in ms since epoch.
+       * @return 0, if a token has been taken. Otherwise the time in ms until the next token is available.
+       */
+      private synchronized long tryAcquire(long now) {
+         double rate = perMinute / 60000.0;
+         tokens = Math.min(perMinute, tokens + (now - lastRefill) * rate);
+         lastRefill = now;
+         if (tokens >= 1) {
+            tokens--;
+            return 0;
+         }
+
+         return Math.max(1, (long) Math.ceil((1 - tokens) / rate));
+      }
+   }
+}
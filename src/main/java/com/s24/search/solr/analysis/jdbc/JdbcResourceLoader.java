@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.lucene.analysis.util.ResourceLoader;
 
@@ -53,7 +54,20 @@ class JdbcResourceLoader implements ResourceLoader {
    @Override
    public InputStream openResource(String resource) throws IOException {
       if (DATABASE.equals(resource)) {
-         return new ReaderInputStream(reader.getReader(), charset);
+         InputStream input = new ReaderInputStream(reader.getReader(), charset);
+         JdbcLoadStatistics statistics = reader.getLoadStatistics();
+         if (statistics == null) {
+            return input;
+         }
+
+         // Report the number of bytes read.
+         return new CountingInputStream(input) {
+            @Override
+            public void close() throws IOException {
+               super.close();
+               statistics.read(getByteCount());
+            }
+         };
       }
 
       return parent.openResource(resource);
@@ -2,18 +2,31 @@ package com.s24.search.solr.analysis.jdbc;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.StopFilter;
 import org.apache.lucene.analysis.core.StopFilterFactory;
+import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.Accountable;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import com.s24.search.solr.analysis.SearcherAware;
 
 /**
  * Factory for a {@link StopFilter} which loads stop words from a database.
+ *
+ * Each version of the stop words is compiled by a separate {@link StopFilterFactory}
+ * and published atomically, so reloads never affect concurrent analysis.
  * 
  * @author Shopping24 GmbH, Torsten Bøgh Köster (@tboeghk)
  */
-public class JdbcStopFilterFactory extends StopFilterFactory {
+public class JdbcStopFilterFactory extends StopFilterFactory implements SearcherAware, JdbcInfoMBean {
 
    /**
     * {@link Charset} to encode synonym database with. Has to be the same as in
@@ -26,6 +39,11 @@ public class JdbcStopFilterFactory extends StopFilterFactory {
     */
    private final JdbcReader reader;
 
+   /**
+    * Stop words, compiled into a {@link StopFilterFactory}.
+    */
+   private final JdbcDictionary<StopFilterFactory> stopWords;
+
    /**
     * Constructor.
     *
@@ -48,10 +66,75 @@ public class JdbcStopFilterFactory extends StopFilterFactory {
       super(args);
 
       this.reader = reader;
+      this.stopWords = new JdbcDictionary<>("stop words", reader, this::compile,
+            Arrays.asList(getClass(), getOriginalArgs()));
    }
-   
+
+   @Override
+   public TokenStream create(TokenStream input) {
+      return stopWords.get().create(input);
+   }
+
+   @Override
+   public CharArraySet getStopWords() {
+      return stopWords.get().getStopWords();
+   }
+
+   @Override
+   public void inform(SolrIndexSearcher searcher) {
+      try {
+         stopWords.reload(searcher.getCore().getResourceLoader());
+      } catch (IOException e) {
+         throw new IllegalArgumentException("Failed to notify about new searcher.", e);
+      }
+   }
+
    @Override
    public void inform(ResourceLoader loader) throws IOException {
-      super.inform(new JdbcResourceLoader(loader, reader, UTF8));
+      stopWords.load(loader);
+   }
+
+   @Override
+   public JdbcReader getJdbcReader() {
+      return reader;
+   }
+
+   /**
+    * Compile the stop words into a new {@link StopFilterFactory}.
+    *
+    * @param loader
+    *           Resource loader.
+    * @param reader
+    *           Reader for stop words.
+    */
+   private StopFilterFactory compile(ResourceLoader loader, JdbcReader reader) throws IOException {
+      StopFilterFactory factory = new CompiledStopFilterFactory(new HashMap<>(getOriginalArgs()));
+      factory.inform(new JdbcResourceLoader(loader, reader, UTF8));
+      return factory;
+   }
+
+   /**
+    * {@link StopFilterFactory} which reports the RAM usage of its stop words.
+    */
+   private static class CompiledStopFilterFactory extends StopFilterFactory implements Accountable {
+      /**
+       * Constructor.
+       *
+       * @param args
+       *           Configuration.
+       */
+      CompiledStopFilterFactory(Map<String, String> args) {
+         super(args);
+      }
+
+      @Override
+      public long ramBytesUsed() {
+         return JdbcLoadStatistics.ramBytesUsed(getStopWords());
+      }
+
+      @Override
+      public Collection<Accountable> getChildResources() {
+         return Collections.emptyList();
+      }
    }
 }
@@ -1,12 +1,23 @@
 package com.s24.search.solr.analysis.jdbc;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.synonym.SynonymFilter;
 import org.apache.lucene.analysis.synonym.SynonymFilterFactory;
+import org.apache.lucene.analysis.synonym.SynonymMap;
 import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.Accountable;
 import org.apache.solr.search.SolrIndexSearcher;
 
 import com.s24.search.solr.analysis.SearcherAware;
@@ -14,9 +25,12 @@ import com.s24.search.solr.analysis.SearcherAware;
 /**
  * Factory for a {@link SynonymFilter} which loads synonyms from a database.
  *
+ * Each version of the synonyms is compiled by a separate {@link SynonymFilterFactory}
+ * and published atomically, so reloads never affect concurrent analysis.
+ *
  * @author Shopping24 GmbH, Torsten Bøgh Köster (@tboeghk)
  */
-public class JdbcSynonymFilterFactory extends SynonymFilterFactory implements SearcherAware {
+public class JdbcSynonymFilterFactory extends SynonymFilterFactory implements SearcherAware, JdbcInfoMBean {
 
    /**
     * {@link Charset} to encode synonym database with. Has to be the same as in
@@ -29,6 +43,16 @@ public class JdbcSynonymFilterFactory extends SynonymFilterFactory implements Se
     */
    private final JdbcReader reader;
 
+   /**
+    * Does the SQL return synonyms as columns instead of lines in the Solr synonym format?.
+    */
+   private final boolean structured;
+
+   /**
+    * Synonyms, compiled into a {@link SynonymFilterFactory}.
+    */
+   private final JdbcDictionary<SynonymFilterFactory> synonyms;
+
    /**
     * Constructor.
     *
@@ -48,15 +72,37 @@ public class JdbcSynonymFilterFactory extends SynonymFilterFactory implements Se
     *           Reader for synonyms.
     */
    JdbcSynonymFilterFactory(Map<String, String> args, JdbcReader reader) {
+      this(args, reader, "true".equals(args.remove(JdbcReaderFactoryParams.STRUCTURED)));
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param args
+    *           Configuration.
+    * @param reader
+    *           Reader for synonyms.
+    * @param structured
+    *           Does the SQL return synonyms as columns instead of lines in the Solr synonym format?.
+    */
+   private JdbcSynonymFilterFactory(Map<String, String> args, JdbcReader reader, boolean structured) {
       super(args);
 
       this.reader = reader;
+      this.structured = structured;
+      this.synonyms = new JdbcDictionary<>("synonyms", reader, this::compile,
+            Arrays.asList(getClass(), getOriginalArgs(), structured));
+   }
+
+   @Override
+   public TokenStream create(TokenStream input) {
+      return synonyms.get().create(input);
    }
 
    @Override
    public void inform(SolrIndexSearcher searcher) {
       try {
-         inform(searcher.getCore().getResourceLoader());
+         synonyms.reload(searcher.getCore().getResourceLoader());
       } catch (IOException e) {
          throw new IllegalArgumentException("Failed to notify about new searcher.", e);
       }
@@ -64,6 +110,73 @@ public class JdbcSynonymFilterFactory extends SynonymFilterFactory implements Se
 
    @Override
    public void inform(ResourceLoader loader) throws IOException {
-      super.inform(new JdbcResourceLoader(loader, reader, UTF8));
+      synonyms.load(loader);
+   }
+
+   @Override
+   public JdbcReader getJdbcReader() {
+      return reader;
+   }
+
+   /**
+    * Compile the synonyms into a new {@link SynonymFilterFactory}.
+    *
+    * @param loader
+    *           Resource loader.
+    * @param reader
+    *           Reader for synonyms.
+    */
+   private SynonymFilterFactory compile(ResourceLoader loader, JdbcReader reader) throws IOException {
+      Map<String, String> args = new HashMap<>(getOriginalArgs());
+      SynonymFilterFactory factory = new CompiledSynonymFilterFactory(args);
+      factory.inform(new JdbcResourceLoader(loader, reader, UTF8));
+      return factory;
+   }
+
+   /**
+    * {@link SynonymFilterFactory} which keeps the {@link SynonymMap} to report its RAM usage.
+    * If structured, it parses the synonyms from SQL columns via a {@link JdbcSynonymParser}.
+    * Either way the data is read via the {@link JdbcResourceLoader} of the current load.
+    */
+   private final class CompiledSynonymFilterFactory extends SynonymFilterFactory implements Accountable {
+      /**
+       * Compiled synonyms.
+       */
+      private SynonymMap map;
+
+      /**
+       * Constructor.
+       *
+       * @param args
+       *           Configuration.
+       */
+      CompiledSynonymFilterFactory(Map<String, String> args) {
+         super(args);
+      }
+
+      @Override
+      protected SynonymMap loadSynonyms(ResourceLoader loader, String cname, boolean dedup, Analyzer analyzer)
+            throws IOException, ParseException {
+         if (structured) {
+            JdbcSynonymParser parser = new JdbcSynonymParser(dedup, analyzer);
+            try (Reader in = new InputStreamReader(loader.openResource(JdbcResourceLoader.DATABASE), UTF8)) {
+               parser.parse(in);
+            }
+            map = parser.build();
+         } else {
+            map = super.loadSynonyms(loader, cname, dedup, analyzer);
+         }
+         return map;
+      }
+
+      @Override
+      public long ramBytesUsed() {
+         return map != null && map.fst != null ? map.fst.ramBytesUsed() : 0;
+      }
+
+      @Override
+      public Collection<Accountable> getChildResources() {
+         return Collections.emptyList();
+      }
    }
 }
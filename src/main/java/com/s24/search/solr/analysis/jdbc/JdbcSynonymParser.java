@@ -0,0 +1,94 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SynonymMap.Parser} which adds synonyms directly from the columns of a SQL result,
+ * without serializing them to and parsing them from the Solr synonym format.
+ *
+ * The SQL has to return the columns input and output and optionally a boolean column
+ * whether to include the original token (includeOrig). Each row is added as one rule <code>input=&gt;output</code>.
+ * The rows are read as lines with all columns encoded by {@link JdbcColumns},
+ * so they are loaded, snapshotted and prefetched by the {@link JdbcReader} like any other data.
+ */
+class JdbcSynonymParser extends SynonymMap.Parser {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(JdbcSynonymParser.class);
+
+   /**
+    * Constructor.
+    *
+    * @param dedup
+    *           Remove duplicate rules?.
+    * @param analyzer
+    *           Analyzer for inputs and outputs.
+    */
+   JdbcSynonymParser(boolean dedup, Analyzer analyzer) {
+      super(dedup, analyzer);
+   }
+
+   /**
+    * Add all rows.
+    *
+    * @param in
+    *           Rows with the columns input, output and optionally includeOrig, encoded by {@link JdbcColumns}.
+    */
+   @Override
+   public void parse(Reader in) throws IOException, ParseException {
+      BufferedReader lines = new BufferedReader(in);
+      CharsRefBuilder input = new CharsRefBuilder();
+      CharsRefBuilder output = new CharsRefBuilder();
+      int rows = 0;
+      int lineNumber = 0;
+      for (String line; (line = lines.readLine()) != null;) {
+         lineNumber++;
+         if (line.isEmpty()) {
+            continue;
+         }
+
+         List<String> columns = JdbcColumns.decode(line);
+         if (columns.size() < 2) {
+            throw new ParseException("Synonym columns input and output expected.", lineNumber);
+         }
+         String inputText = columns.get(0);
+         String outputText = columns.get(1);
+         if (inputText == null || outputText == null) {
+            continue;
+         }
+
+         boolean includeOrig = columns.size() > 2 && isTrue(columns.get(2));
+         try {
+            add(analyze(inputText, input), analyze(outputText, output), includeOrig);
+         } catch (IllegalArgumentException e) {
+            ParseException ex = new ParseException("Invalid synonym " + inputText + "=>" + outputText + ".", lineNumber);
+            ex.initCause(e);
+            throw ex;
+         }
+         rows++;
+      }
+
+      logger.info("Loaded {} synonyms", rows);
+   }
+
+   /**
+    * Is a boolean column true? Like {@link java.sql.ResultSet#getBoolean(int)} for the common string representations.
+    */
+   private static boolean isTrue(String value) {
+      return value != null && ("1".equals(value) || "true".equalsIgnoreCase(value) || "t".equalsIgnoreCase(value)
+            || "y".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value));
+   }
+}
@@ -0,0 +1,320 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Reader} which lazily reads the first column of the result of a SQL page by page via keyset pagination:
+ * Each page is fetched by a separate short query <code>WHERE key &gt; ? ORDER BY key</code>,
+ * continuing after the last key of the previous page. Rows are separated by line breaks.
+ * The page size is applied via {@link PreparedStatement#setMaxRows(int)}, so no vendor specific SQL like
+ * <code>LIMIT</code> is needed.
+ *
+ * Just the current page is kept in memory and no database snapshot is held open between pages.
+ * A failed page is retried without restarting the whole load.
+ * The key column has to be unique, otherwise rows get lost. It has to be not null, otherwise the load fails.
+ */
+class KeysetReader extends Reader {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(KeysetReader.class);
+
+   /**
+    * Number of attempts to fetch a page.
+    */
+   private static final int ATTEMPTS = 3;
+
+   /**
+    * Delay in ms before the first retry of a page. Doubled for each further retry.
+    */
+   private static final long RETRY_DELAY = 1000;
+
+   /**
+    * Data source.
+    */
+   private final DataSource dataSource;
+
+   /**
+    * SQL for the first page.
+    */
+   private final String firstPageSql;
+
+   /**
+    * SQL for all further pages.
+    */
+   private final String nextPageSql;
+
+   /**
+    * Name of the key column.
+    */
+   private final String keyColumn;
+
+   /**
+    * Maximum number of rows per page.
+    */
+   private final int pageSize;
+
+   /**
+    * Fetch size for the pages. If not positive, the driver default is used.
+    */
+   private final int fetchSize;
+
+   /**
+    * Statistics to report the phases of each page to.
+    */
+   private final JdbcLoadStatistics statistics;
+
+   /**
+    * Rows of the current page.
+    */
+   private final List<String> page = new ArrayList<>();
+
+   /**
+    * Index of the current row in the current page.
+    */
+   private int index = 0;
+
+   /**
+    * Key of the last row fetched. Null, before the first page has been fetched.
+    */
+   private Object lastKey = null;
+
+   /**
+    * Has the last page been fetched?.
+    */
+   private boolean lastPage = false;
+
+   /**
+    * Current row.
+    */
+   private String row = "";
+
+   /**
+    * Position in the current row.
+    */
+   private int position = 0;
+
+   /**
+    * Is a line break pending before the current row?.
+    */
+   private boolean separator = false;
+
+   /**
+    * Number of rows read so far.
+    */
+   private int rows = 0;
+
+   /**
+    * Number of pages fetched so far.
+    */
+   private int pages = 0;
+
+   /**
+    * Has the reader been closed?.
+    */
+   private boolean closed = false;
+
+   /**
+    * Constructor.
+    *
+    * @param dataSource
+    *           Data source.
+    * @param sql
+    *           SQL. The first column contains the data.
+    * @param keyColumn
+    *           Name of the key column in the result of the SQL. Has to be unique and not null.
+    * @param pageSize
+    *           Maximum number of rows per page.
+    * @param fetchSize
+    *           Fetch size for the pages. If not positive, the driver default is used.
+    * @param statistics
+    *           Statistics to report the phases of each page to.
+    */
+   KeysetReader(DataSource dataSource, String sql, String keyColumn, int pageSize, int fetchSize,
+         JdbcLoadStatistics statistics) {
+      checkArgument(pageSize > 0, "The page size has to be positive.");
+      this.dataSource = checkNotNull(dataSource);
+      this.keyColumn = checkNotNull(keyColumn);
+      this.pageSize = pageSize;
+      this.fetchSize = fetchSize;
+      this.statistics = checkNotNull(statistics);
+
+      // Trailing semicolons are not allowed in sub queries.
+      String query = "select * from (" + sql.trim().replaceAll(";+$", "") + ") page";
+      this.firstPageSql = query + " order by " + keyColumn;
+      this.nextPageSql = query + " where " + keyColumn + " > ? order by " + keyColumn;
+   }
+
+   @Override
+   public int read(char[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+         return 0;
+      }
+
+      int read = 0;
+      while (read < length) {
+         if (separator) {
+            buffer[offset + read++] = '\n';
+            separator = false;
+
+         } else if (position < row.length()) {
+            int count = Math.min(length - read, row.length() - position);
+            row.getChars(position, position + count, buffer, offset + read);
+            position += count;
+            read += count;
+
+         } else if (!nextRow()) {
+            break;
+         }
+      }
+
+      return read > 0 ? read : -1;
+   }
+
+   /**
+    * Move to the next row, fetching the next page if necessary.
+    *
+    * @return Whether there has been a next row.
+    */
+   private boolean nextRow() throws IOException {
+      if (closed) {
+         return false;
+      }
+
+      if (index >= page.size()) {
+         if (lastPage) {
+            close();
+            return false;
+         }
+
+         fetchPage();
+         if (page.isEmpty()) {
+            close();
+            return false;
+         }
+      }
+
+      String value = page.get(index++);
+      row = value != null ? value : "";
+      position = 0;
+      separator = rows++ > 0;
+      return true;
+   }
+
+   /**
+    * Fetch the next page, retrying it on failures.
+    */
+   private void fetchPage() throws IOException {
+      for (int attempt = 1;; attempt++) {
+         try {
+            doFetchPage();
+            return;
+
+         } catch (IOException e) {
+            // Invalid data won't get better by retrying.
+            close();
+            throw e;
+
+         } catch (SQLException e) {
+            if (attempt >= ATTEMPTS) {
+               close();
+               throw new IOException("Failed to load page " + (pages + 1) + " from the database", e);
+            }
+
+            long delay = RETRY_DELAY << (attempt - 1);
+            logger.warn("Failed to load page {} from the database, retrying in {} ms: {}.",
+                  pages + 1, delay, e.getMessage());
+            try {
+               TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException ie) {
+               Thread.currentThread().interrupt();
+               close();
+               throw new InterruptedIOException("Interrupted while retrying to load a page.");
+            }
+         }
+      }
+   }
+
+   /**
+    * Fetch the next page after {@link #lastKey}.
+    */
+   private void doFetchPage() throws IOException, SQLException {
+      page.clear();
+      index = 0;
+
+      Connection connection = null;
+      PreparedStatement statement = null;
+      ResultSet resultSet = null;
+      try {
+         long start = System.nanoTime();
+         connection = dataSource.getConnection();
+         long connected = System.nanoTime();
+         statistics.connected(connected - start);
+
+         statement = connection.prepareStatement(lastKey == null ? firstPageSql : nextPageSql,
+               ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+         statement.setMaxRows(pageSize);
+         if (fetchSize > 0) {
+            statement.setFetchSize(fetchSize);
+         }
+         if (lastKey != null) {
+            statement.setObject(1, lastKey);
+         }
+         resultSet = statement.executeQuery();
+         long executed = System.nanoTime();
+         statistics.executed(executed - connected);
+
+         Object key = lastKey;
+         while (resultSet.next()) {
+            page.add(resultSet.getString(1));
+            key = resultSet.getObject(keyColumn);
+            if (key == null) {
+               throw new IOException("The key column " + keyColumn + " of row " + (rows + page.size())
+                     + " is null, but keyset pagination requires a not null key.");
+            }
+         }
+         statistics.fetched(System.nanoTime() - executed, page.size());
+
+         // Publish the position just after the whole page has been fetched, so a failed page is retried completely.
+         lastKey = key;
+         lastPage = page.size() < pageSize;
+         pages++;
+
+      } catch (IOException | SQLException e) {
+         page.clear();
+         throw e;
+
+      } finally {
+         DbUtils.closeQuietly(connection, statement, resultSet);
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (closed) {
+         return;
+      }
+      closed = true;
+      page.clear();
+
+      logger.info("Loaded {} lines in {} pages", rows, pages);
+   }
+}
@@ -0,0 +1,288 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link JdbcReader} which loads the data in partitions concurrently, each via a separate connection.
+ * The SQL contains the placeholders {@value #PARTITION} and {@value #PARTITIONS}, which are replaced by the index
+ * of the partition and the number of partitions, e.g. <code>SELECT line FROM synonyms WHERE mod(id, {partitions}) = {partition}</code>.
+ *
+ * The partitions are streamed in the order of their index, each via a forward only cursor like
+ * {@link SimpleJdbcReader} with a fetch size. The queries of the next partitions are executed concurrently,
+ * while the current partition is read. At most {@value #OPEN_PARTITIONS} partitions of a reader are open at once,
+ * each holding a connection. The durations of the phases are summed over all partitions.
+ */
+class PartitionedJdbcReader extends SimpleJdbcReader {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(PartitionedJdbcReader.class);
+
+   /**
+    * Placeholder for the index of the partition, starting with 0.
+    */
+   static final String PARTITION = "{partition}";
+
+   /**
+    * Placeholder for the number of partitions.
+    */
+   static final String PARTITIONS = "{partitions}";
+
+   /**
+    * Maximum number of partitions executed concurrently by all readers, to not exhaust the connections of the data sources.
+    */
+   private static final int THREADS = 16;
+
+   /**
+    * Maximum number of open partitions of a reader: The current one and the ones executed ahead.
+    */
+   static final int OPEN_PARTITIONS = 4;
+
+   /**
+    * Executor for executing the queries of partitions, shared by all readers.
+    */
+   private static final ExecutorService loader = createLoader();
+
+   /**
+    * Number of partitions.
+    */
+   private final int partitions;
+
+   /**
+    * Constructor.
+    *
+    * @param dataSource
+    *           Data source, if null reader fails silently.
+    * @param sql
+    *           SQL with the placeholders {@value #PARTITION} and {@value #PARTITIONS}.
+    * @param ignore
+    *           Ignore a missing database?.
+    * @param fetchSize
+    *           Number of rows fetched at once. 0 for the default of the driver.
+    * @param fingerprintSql
+    *           SQL to load a fingerprint of the data. Optional.
+    * @param partitions
+    *           Number of partitions.
+    */
+   PartitionedJdbcReader(DataSource dataSource, String sql, boolean ignore, int fetchSize, String fingerprintSql,
+         int partitions) {
+      // Check the configuration before checking the data source.
+      super(dataSource, checkPartitions(sql, partitions), ignore, fetchSize, fingerprintSql);
+      this.partitions = partitions;
+   }
+
+   /**
+    * Check the configuration of the partitions.
+    *
+    * @param sql
+    *           SQL with the placeholders {@value #PARTITION} and {@value #PARTITIONS}.
+    * @param partitions
+    *           Number of partitions.
+    * @return SQL.
+    */
+   private static String checkPartitions(String sql, int partitions) {
+      checkArgument(sql != null && sql.contains(PARTITION), "The SQL has to contain the placeholder " + PARTITION + ".");
+      checkArgument(partitions > 0, "The number of partitions has to be positive.");
+      return sql;
+   }
+
+   /**
+    * Create executor for executing the queries of partitions.
+    */
+   private static ExecutorService createLoader() {
+      ThreadPoolExecutor result = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("jdbc-partition-loader-%d").setDaemon(true).build());
+      result.allowCoreThreadTimeOut(true);
+      return result;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Reader getReader() {
+      if (dataSource == null) {
+         if (ignore) {
+            return new StringReader("");
+         }
+         throw new IllegalArgumentException("Missing data source.");
+      }
+
+      logger.info("Streaming data using {} in {} partitions", getSql(), partitions);
+      return new PartitionsReader();
+   }
+
+   /**
+    * Execute the query of a partition in the background.
+    *
+    * @param partition
+    *           Index of the partition.
+    * @return Reader of the partition.
+    */
+   private Future<ResultSetReader> open(int partition) {
+      String partitionSql = getSql()
+            .replace(PARTITIONS, Integer.toString(partitions))
+            .replace(PARTITION, Integer.toString(partition));
+      return loader.submit(() -> stream(partitionSql));
+   }
+
+   /**
+    * {@link Reader} which reads the partitions in the order of their index, separated by line breaks.
+    * It executes the queries of up to {@value #OPEN_PARTITIONS} partitions ahead.
+    */
+   private final class PartitionsReader extends Reader {
+      /**
+       * Open partitions, the current one first.
+       */
+      private final Deque<Future<ResultSetReader>> open = new ArrayDeque<>(OPEN_PARTITIONS);
+
+      /**
+       * Index of the next partition to open.
+       */
+      private int next = 0;
+
+      /**
+       * Reader of the current partition. Null, if not started yet.
+       */
+      private ResultSetReader current;
+
+      /**
+       * Has any data been read?.
+       */
+      private boolean read = false;
+
+      /**
+       * Is a line break pending before the next data?.
+       */
+      private boolean separator = false;
+
+      /**
+       * Character read ahead after a line break. -1, if none.
+       */
+      private int pending = -1;
+
+      /**
+       * Constructor.
+       */
+      private PartitionsReader() {
+         fill();
+      }
+
+      /**
+       * Open partitions ahead, up to the maximum number of open partitions.
+       */
+      private void fill() {
+         while (next < partitions && open.size() < OPEN_PARTITIONS) {
+            open.addLast(PartitionedJdbcReader.this.open(next++));
+         }
+      }
+
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+         if (length == 0) {
+            return 0;
+         }
+
+         while (true) {
+            if (pending >= 0) {
+               buffer[offset] = (char) pending;
+               pending = -1;
+               return 1;
+            }
+
+            if (current == null) {
+               if (open.isEmpty()) {
+                  return -1;
+               }
+               current = take();
+            }
+
+            if (separator) {
+               // Separate just partitions with data, so empty partitions don't add empty lines.
+               int c = current.read();
+               if (c >= 0) {
+                  separator = false;
+                  buffer[offset] = '\n';
+                  if (length == 1) {
+                     pending = c;
+                     return 1;
+                  }
+                  buffer[offset + 1] = (char) c;
+                  return 2;
+               }
+
+            } else {
+               int count = current.read(buffer, offset, length);
+               if (count > 0) {
+                  read = true;
+                  return count;
+               }
+            }
+
+            // Partition exhausted: Continue with the next one.
+            current.close();
+            current = null;
+            open.removeFirst();
+            fill();
+            separator = read;
+         }
+      }
+
+      /**
+       * Wait for the query of the first open partition.
+       */
+      private ResultSetReader take() throws IOException {
+         try {
+            return open.getFirst().get();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading data from the database", e);
+         } catch (ExecutionException e) {
+            throw new IOException("Failed to load data from the database", e.getCause());
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (current != null) {
+            current.close();
+            current = null;
+            open.removeFirst();
+         }
+
+         // Release the connections of the partitions executed ahead.
+         for (Future<ResultSetReader> partition; (partition = open.pollFirst()) != null;) {
+            if (!partition.cancel(false)) {
+               try {
+                  partition.get().close();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               } catch (ExecutionException e) {
+                  logger.debug("Failed to load partition: {}.", e.getCause().getMessage());
+               }
+            }
+         }
+         next = partitions;
+      }
+   }
+}
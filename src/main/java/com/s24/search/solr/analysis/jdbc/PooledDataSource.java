@@ -0,0 +1,604 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Pooled {@link DataSource} which can be defined as bean in the {@link com.s24.search.solr.ConfiguringHttpShardHandlerFactory}:
+ *
+ * <pre>
+ *    &lt;lst name="jdbc/synonyms"&gt;
+ *       &lt;str name="class"&gt;com.s24.search.solr.analysis.jdbc.{@linkplain PooledDataSource}&lt;/str&gt;
+ *       &lt;str name="url"&gt;jdbc:postgresql://localhost/synonyms&lt;/str&gt;
+ *       &lt;str name="username"&gt;solr&lt;/str&gt;
+ *       &lt;str name="password"&gt;secret&lt;/str&gt;
+ *       &lt;int name="minSize"&gt;1&lt;/int&gt;
+ *       &lt;int name="maxSize"&gt;8&lt;/int&gt;
+ *    &lt;/lst&gt;
+ * </pre>
+ *
+ * Idle connections are validated before they are handed out, so connections closed by the database are replaced.
+ * Connections idle for longer than the idle timeout are evicted, down to the minimum size.
+ * A single background thread, shared by all pools, validates the pools and publishes their health,
+ * so readers don't need to open connections to check the database.
+ *
+ * Connections are opened with the login timeout of the pool, so a database hanging on connect
+ * neither blocks the validation of the other pools nor borrowers forever.
+ * The validation doesn't hold the lock of the pool, so borrowers never wait for it.
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+   /**
+    * Logger.
+    */
+   private static final org.slf4j.Logger log = LoggerFactory.getLogger(PooledDataSource.class);
+
+   /**
+    * Validator of all pools.
+    */
+   private static final ScheduledExecutorService validator = Executors.newSingleThreadScheduledExecutor(
+         new ThreadFactoryBuilder().setNameFormat("jdbc-pool-validator-%d").setDaemon(true).build());
+
+   /**
+    * Executor for opening connections of all pools, so opening them can time out.
+    */
+   private static final ExecutorService connector = Executors.newCachedThreadPool(
+         new ThreadFactoryBuilder().setNameFormat("jdbc-pool-connector-%d").setDaemon(true).build());
+
+   /**
+    * Class name of the JDBC driver. Optional for JDBC 4 drivers.
+    */
+   private String driverClassName;
+
+   /**
+    * JDBC URL.
+    */
+   private String url;
+
+   /**
+    * User name.
+    */
+   private String username;
+
+   /**
+    * Password.
+    */
+   private String password;
+
+   /**
+    * Minimum number of open connections.
+    */
+   private int minSize = 0;
+
+   /**
+    * Maximum number of open connections.
+    */
+   private int maxSize = 8;
+
+   /**
+    * Time in ms after which idle connections get evicted.
+    */
+   private long idleTimeout = 600000;
+
+   /**
+    * Interval in ms of the validation.
+    */
+   private long validationInterval = 30000;
+
+   /**
+    * Timeout in s for validating a connection.
+    */
+   private int validationTimeout = 5;
+
+   /**
+    * Maximum time in ms to wait for a connection.
+    */
+   private long maxWait = 30000;
+
+   /**
+    * Maximum time in s to wait for opening a connection.
+    */
+   private int loginTimeout = 10;
+
+   /**
+    * Idle connections. The most recently used connection is first.
+    */
+   private final BlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+
+   /**
+    * Number of open connections, idle or in use.
+    */
+   private final AtomicInteger open = new AtomicInteger();
+
+   /**
+    * Permits for connections in use.
+    */
+   private Semaphore permits;
+
+   /**
+    * Has the pool been started?.
+    */
+   private volatile boolean started = false;
+
+   /**
+    * Has the pool been closed?.
+    */
+   private volatile boolean closed = false;
+
+   /**
+    * Lock for validations, separate from the lock of the pool, because validations do I/O.
+    */
+   private final Object validationLock = new Object();
+
+   /**
+    * Scheduled validation. Null, if not started yet.
+    */
+   private ScheduledFuture<?> validation;
+
+   /**
+    * Health of the database, as published by the last validation.
+    */
+   private volatile boolean healthy = false;
+
+   /**
+    * Has the pool been validated at least once?.
+    */
+   private volatile boolean validated = false;
+
+   /**
+    * Start pool, if not started yet.
+    */
+   private void start() {
+      if (started) {
+         return;
+      }
+
+      synchronized (this) {
+         if (!started) {
+            doStart();
+            started = true;
+         }
+      }
+   }
+
+   /**
+    * Start pool.
+    */
+   private void doStart() {
+      checkState(!closed, "The pool has been closed.");
+      checkState(url != null, "No JDBC URL configured.");
+      checkArgument(minSize >= 0 && maxSize > 0 && minSize <= maxSize, "Invalid pool size.");
+      if (driverClassName != null) {
+         try {
+            Class.forName(driverClassName);
+         } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("JDBC driver not found.", e);
+         }
+      }
+
+      permits = new Semaphore(maxSize, true);
+      validation = validator.scheduleWithFixedDelay(this::validate,
+            validationInterval, validationInterval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Health of the database as published by the background validation.
+    * Validates synchronously, if the pool has not been validated yet.
+    *
+    * @return Whether the last validation succeeded.
+    */
+   public boolean isHealthy() {
+      start();
+      if (!validated) {
+         synchronized (validationLock) {
+            if (!validated) {
+               validate();
+            }
+         }
+      }
+      return healthy;
+   }
+
+   /**
+    * Validate the pool: Evict idle connections, validate a connection, fill the pool to its minimum size
+    * and publish the health.
+    */
+   void validate() {
+      synchronized (validationLock) {
+         if (!closed) {
+            doValidate();
+         }
+      }
+   }
+
+   /**
+    * Validate the pool.
+    */
+   private void doValidate() {
+      try {
+         evict();
+
+         IdleConnection connection = idle.pollFirst();
+         if (connection == null && permits.availablePermits() == 0) {
+            // All connections are in use, so don't exceed the maximum size just for validating.
+            return;
+         } else if (connection == null) {
+            connection = new IdleConnection(connect());
+         } else if (!isValid(connection.connection)) {
+            destroy(connection.connection);
+            connection = new IdleConnection(connect());
+         }
+         idle.offerFirst(connection);
+
+         while (open.get() < minSize) {
+            idle.offerLast(new IdleConnection(connect()));
+         }
+
+         if (!healthy) {
+            log.info("Database {} is available.", url);
+         }
+         healthy = true;
+
+      } catch (SQLException | RuntimeException e) {
+         if (healthy || !validated) {
+            log.error("Database {} is not available: {}.", url, e.getMessage());
+         }
+         healthy = false;
+      } finally {
+         validated = true;
+         if (closed) {
+            closeIdle();
+         }
+      }
+   }
+
+   /**
+    * Evict connections idle for longer than the idle timeout, down to the minimum size.
+    */
+   private void evict() {
+      long limit = System.currentTimeMillis() - idleTimeout;
+      for (Iterator<IdleConnection> i = idle.descendingIterator(); i.hasNext() && open.get() > minSize;) {
+         IdleConnection connection = i.next();
+         if (connection.since < limit && idle.remove(connection)) {
+            destroy(connection.connection);
+         }
+      }
+   }
+
+   /**
+    * Open a new physical connection.
+    */
+   private Connection connect() throws SQLException {
+      Future<Connection> connection = connector.submit(() -> DriverManager.getConnection(url, username, password));
+      try {
+         Connection result = connection.get(loginTimeout, TimeUnit.SECONDS);
+         open.incrementAndGet();
+         return result;
+      } catch (TimeoutException e) {
+         abandon(connection);
+         throw new SQLException("No connection to " + url + " within " + loginTimeout + " s.", e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         abandon(connection);
+         throw new SQLException("Interrupted while connecting to " + url + ".", e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof SQLException) {
+            throw (SQLException) e.getCause();
+         } else if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new SQLException("Failed to connect to " + url + ".", e.getCause());
+      }
+   }
+
+   /**
+    * Close a connection which is still being opened, as soon as it has been opened.
+    *
+    * @param connection
+    *           Connection being opened.
+    */
+   private void abandon(Future<Connection> connection) {
+      connector.execute(() -> {
+         try {
+            connection.get().close();
+         } catch (InterruptedException | ExecutionException | SQLException e) {
+            log.debug("Failed to open abandoned connection to {}: {}.", url, e.getMessage());
+         }
+      });
+   }
+
+   /**
+    * Close a physical connection.
+    */
+   private void destroy(Connection connection) {
+      open.decrementAndGet();
+      try {
+         connection.close();
+      } catch (SQLException e) {
+         log.warn("Failed to close connection: {}.", e.getMessage());
+      }
+   }
+
+   @Override
+   public Connection getConnection() throws SQLException {
+      start();
+      if (closed) {
+         throw new SQLException("The pool has been closed.");
+      }
+      try {
+         if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+            throw new SQLException("No connection available within " + maxWait + " ms.");
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new SQLException("Interrupted while waiting for a connection.", e);
+      }
+
+      try {
+         return pooled(borrow());
+      } catch (SQLException | RuntimeException e) {
+         permits.release();
+         throw e;
+      }
+   }
+
+   /**
+    * Take the most recently used valid idle connection or open a new one. Invalid idle connections are closed.
+    */
+   private Connection borrow() throws SQLException {
+      for (IdleConnection connection; (connection = idle.pollFirst()) != null;) {
+         if (isValid(connection.connection)) {
+            return connection.connection;
+         }
+         log.info("Discarding invalid connection to {}.", url);
+         destroy(connection.connection);
+      }
+      return connect();
+   }
+
+   /**
+    * Is a physical connection still valid?.
+    */
+   private boolean isValid(Connection connection) {
+      try {
+         return connection.isValid(validationTimeout);
+      } catch (SQLException | RuntimeException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Wrap a physical connection, so that closing it returns it to the pool.
+    *
+    * @param connection
+    *           Physical connection.
+    */
+   private Connection pooled(Connection connection) {
+      AtomicInteger closed = new AtomicInteger();
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+               switch (method.getName()) {
+                  case "close":
+                     if (closed.getAndIncrement() == 0) {
+                        release(connection);
+                     }
+                     return null;
+                  case "isClosed":
+                     return closed.get() > 0 || connection.isClosed();
+                  case "unwrap":
+                     return ((Class<?>) args[0]).isInstance(proxy) ? proxy : connection.unwrap((Class<?>) args[0]);
+                  case "isWrapperFor":
+                     return ((Class<?>) args[0]).isInstance(proxy) || connection.isWrapperFor((Class<?>) args[0]);
+                  case "toString":
+                     return "Pooled " + connection;
+                  case "hashCode":
+                     return System.identityHashCode(proxy);
+                  case "equals":
+                     return proxy == args[0];
+                  default:
+                     if (closed.get() > 0) {
+                        throw new SQLException("Connection has been closed.");
+                     }
+                     try {
+                        return method.invoke(connection, args);
+                     } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                     }
+               }
+            });
+   }
+
+   /**
+    * Return a physical connection to the pool. Connections returned after the pool has been closed are closed.
+    *
+    * @param connection
+    *           Physical connection.
+    */
+   private void release(Connection connection) {
+      try {
+         if (connection.isClosed()) {
+            open.decrementAndGet();
+         } else if (closed) {
+            destroy(connection);
+         } else {
+            idle.offerFirst(new IdleConnection(connection));
+            if (closed) {
+               // Closed concurrently.
+               closeIdle();
+            }
+         }
+      } catch (SQLException e) {
+         destroy(connection);
+      } finally {
+         permits.release();
+      }
+   }
+
+   /**
+    * Close all idle connections and stop the validation.
+    * Connections in use are closed, when they are returned.
+    */
+   @Override
+   public synchronized void close() {
+      closed = true;
+      if (validation != null) {
+         validation.cancel(false);
+      }
+      closeIdle();
+   }
+
+   /**
+    * Close all idle connections.
+    */
+   private void closeIdle() {
+      for (IdleConnection connection; (connection = idle.pollFirst()) != null;) {
+         destroy(connection.connection);
+      }
+   }
+
+   /**
+    * @return Number of open connections, idle or in use.
+    */
+   public int getOpenConnections() {
+      return open.get();
+   }
+
+   @Override
+   public Connection getConnection(String username, String password) throws SQLException {
+      throw new SQLFeatureNotSupportedException("Pooled connections use the configured user.");
+   }
+
+   @Override
+   public PrintWriter getLogWriter() {
+      return null;
+   }
+
+   @Override
+   public void setLogWriter(PrintWriter out) {
+   }
+
+   @Override
+   public void setLoginTimeout(int seconds) {
+      checkArgument(seconds > 0, "The login timeout has to be positive.");
+      this.loginTimeout = seconds;
+   }
+
+   @Override
+   public int getLoginTimeout() {
+      return loginTimeout;
+   }
+
+   @Override
+   public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+   @Override
+   public <T> T unwrap(Class<T> iface) throws SQLException {
+      if (iface.isInstance(this)) {
+         return iface.cast(this);
+      }
+      throw new SQLException("Not a wrapper for " + iface + ".");
+   }
+
+   @Override
+   public boolean isWrapperFor(Class<?> iface) {
+      return iface.isInstance(this);
+   }
+
+   //
+   // Configuration.
+   //
+
+   public void setDriverClassName(String driverClassName) {
+      this.driverClassName = driverClassName;
+   }
+
+   public void setUrl(String url) {
+      this.url = url;
+   }
+
+   public void setUsername(String username) {
+      this.username = username;
+   }
+
+   public void setPassword(String password) {
+      this.password = password;
+   }
+
+   public void setMinSize(int minSize) {
+      this.minSize = minSize;
+   }
+
+   public void setMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+   }
+
+   public void setIdleTimeout(long idleTimeout) {
+      this.idleTimeout = idleTimeout;
+   }
+
+   public void setValidationInterval(long validationInterval) {
+      this.validationInterval = validationInterval;
+   }
+
+   public void setValidationTimeout(int validationTimeout) {
+      this.validationTimeout = validationTimeout;
+   }
+
+   public void setMaxWait(long maxWait) {
+      this.maxWait = maxWait;
+   }
+
+   /**
+    * Idle connection.
+    */
+   private static final class IdleConnection {
+      /**
+       * Physical connection.
+       */
+      private final Connection connection;
+
+      /**
+       * Idle since, in ms since epoch.
+       */
+      private final long since = System.currentTimeMillis();
+
+      /**
+       * Constructor.
+       *
+       * @param connection
+       *           Physical connection.
+       */
+      private IdleConnection(Connection connection) {
+         this.connection = connection;
+      }
+   }
+}
@@ -0,0 +1,257 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link JdbcReader} which starts loading the data in the background as soon as it has been created,
+ * so the database round trips of all filter factories overlap with each other and with parsing the schema.
+ * The first call of {@link #getReader()}, usually during <code>inform()</code>, joins the prefetch.
+ * All later calls load the data from the database again.
+ *
+ * The fingerprint of the data is queried before the data and reported by {@link #getFingerprint()}
+ * until the prefetched data has been consumed, so it never claims newer data than the prefetched one.
+ *
+ * Prefetches of readers with the same identity, e.g. of the same field type in several cores, are coalesced.
+ * The prefetched data is kept in memory until it has been consumed or until the first load has finished
+ * without it, e.g. because the dictionary has been taken from the {@link JdbcDictionaryCache} or a snapshot.
+ */
+class PrefetchingJdbcReader implements JdbcReader {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(PrefetchingJdbcReader.class);
+
+   /**
+    * Maximum number of concurrent prefetches, to not exhaust the connections of the data sources.
+    */
+   private static final int THREADS = 4;
+
+   /**
+    * Executor for prefetches, shared by all readers.
+    */
+   private static final ExecutorService prefetcher = createPrefetcher();
+
+   /**
+    * Prefetches in flight by identity of the data.
+    */
+   private static final ConcurrentMap<Object, CompletableFuture<Prefetch>> prefetching = new ConcurrentHashMap<>();
+
+   /**
+    * Database based reader.
+    */
+   private final JdbcReader reader;
+
+   /**
+    * Prefetched data. Null, if already consumed or released.
+    */
+   private final AtomicReference<CompletableFuture<Prefetch>> prefetch = new AtomicReference<>();
+
+   /**
+    * Constructor. Starts the prefetch.
+    *
+    * @param reader
+    *           Database based reader.
+    */
+   PrefetchingJdbcReader(JdbcReader reader) {
+      this.reader = checkNotNull(reader);
+
+      Object identity = reader.getIdentity();
+      if (identity == null) {
+         // No data source.
+         return;
+      }
+
+      CompletableFuture<Prefetch> future = new CompletableFuture<>();
+      CompletableFuture<Prefetch> running = prefetching.putIfAbsent(identity, future);
+      if (running != null) {
+         prefetch.set(running);
+         return;
+      }
+
+      prefetch.set(future);
+      prefetcher.execute(() -> {
+         try {
+            future.complete(load());
+         } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+         } finally {
+            prefetching.remove(identity, future);
+         }
+      });
+   }
+
+   /**
+    * Create executor for prefetches.
+    */
+   private static ExecutorService createPrefetcher() {
+      ThreadPoolExecutor result = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("jdbc-prefetcher-%d").setDaemon(true).build());
+      result.allowCoreThreadTimeOut(true);
+      return result;
+   }
+
+   /**
+    * Load the fingerprint and then all data from the database.
+    */
+   private Prefetch load() throws IOException {
+      logger.info("Prefetching data using {}.", reader.getSql());
+      String fingerprint = reader.getFingerprint();
+      try (Reader input = reader.getReader(fingerprint)) {
+         return new Prefetch(fingerprint, CharStreams.toString(input));
+      }
+   }
+
+   /**
+    * Wait for a prefetch.
+    *
+    * @param future
+    *           Prefetch.
+    * @return Prefetched data. Null, if the prefetch failed.
+    */
+   private static Prefetch await(CompletableFuture<Prefetch> future) {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalArgumentException("Interrupted while waiting for the prefetched data.", e);
+      } catch (ExecutionException e) {
+         logger.warn("Failed to prefetch data, loading it again: {}.", e.getCause().getMessage());
+         return null;
+      }
+   }
+
+   /**
+    * Returns the prefetched data on the first call, waiting for the prefetch if necessary.
+    * If the prefetch failed or on later calls, the data is loaded from the database.
+    */
+   @Override
+   public Reader getReader() {
+      Reader prefetched = consume();
+      return prefetched != null ? prefetched : reader.getReader();
+   }
+
+   /**
+    * Like {@link #getReader()}. The given fingerprint is used just, if the data is loaded from the database.
+    */
+   @Override
+   public Reader getReader(String fingerprint) {
+      Reader prefetched = consume();
+      return prefetched != null ? prefetched : reader.getReader(fingerprint);
+   }
+
+   /**
+    * Consume the prefetched data, waiting for the prefetch if necessary.
+    *
+    * @return Reader for the prefetched data. Null, if already consumed or if the prefetch failed.
+    */
+   private Reader consume() {
+      CompletableFuture<Prefetch> future = prefetch.getAndSet(null);
+      Prefetch prefetched = future != null ? await(future) : null;
+      return prefetched != null ? new StringReader(prefetched.data) : null;
+   }
+
+   /**
+    * Releases the prefetched data, if it has not been consumed by the first load.
+    */
+   @Override
+   public void loaded() {
+      if (prefetch.getAndSet(null) != null) {
+         logger.debug("Releasing unused prefetched data of {}.", reader.getSql());
+      }
+      reader.loaded();
+   }
+
+   @Override
+   public QueryRunner getJdbcRunner() {
+      return reader.getJdbcRunner();
+   }
+
+   @Override
+   public String getSql() {
+      return reader.getSql();
+   }
+
+   /**
+    * Returns the fingerprint of the prefetched data, until it has been consumed.
+    */
+   @Override
+   public String getFingerprint() {
+      CompletableFuture<Prefetch> future = prefetch.get();
+      Prefetch prefetched = future != null ? await(future) : null;
+      return prefetched != null ? prefetched.fingerprint : reader.getFingerprint();
+   }
+
+   @Override
+   public Object getIdentity() {
+      return reader.getIdentity();
+   }
+
+   @Override
+   public JdbcReader getSnapshot() {
+      return reader.getSnapshot();
+   }
+
+   @Override
+   public JdbcLoadStatistics getLoadStatistics() {
+      return reader.getLoadStatistics();
+   }
+
+   @Override
+   public JdbcReloadLimiter getReloadLimiter() {
+      return reader.getReloadLimiter();
+   }
+
+   @Override
+   public JdbcRefreshSchedule getRefreshSchedule() {
+      return reader.getRefreshSchedule();
+   }
+
+   /**
+    * Prefetched data with its fingerprint.
+    */
+   private static final class Prefetch {
+      /**
+       * Fingerprint, queried before the data. Null, if not available.
+       */
+      private final String fingerprint;
+
+      /**
+       * Data.
+       */
+      private final String data;
+
+      /**
+       * Constructor.
+       *
+       * @param fingerprint
+       *           Fingerprint, queried before the data. Null, if not available.
+       * @param data
+       *           Data.
+       */
+      private Prefetch(String fingerprint, String data) {
+         this.fingerprint = fingerprint;
+         this.data = data;
+      }
+   }
+}
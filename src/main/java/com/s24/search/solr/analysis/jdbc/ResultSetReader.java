@@ -0,0 +1,192 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Reader} which lazily reads the first column of a forward only {@link ResultSet} row by row.
+ * Rows are separated by line breaks. Just the current row is kept in memory,
+ * so the memory used is bounded by the fetch size of the statement and not by the size of the result.
+ *
+ * The result set, the statement and the connection are closed, when the reader is exhausted or closed.
+ */
+class ResultSetReader extends Reader {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(ResultSetReader.class);
+
+   /**
+    * Connection the result set has been fetched from.
+    */
+   private final Connection connection;
+
+   /**
+    * Auto commit mode of the connection to restore on close.
+    */
+   private final boolean autoCommit;
+
+   /**
+    * Statement the result set has been fetched with.
+    */
+   private final Statement statement;
+
+   /**
+    * Result set.
+    */
+   private final ResultSet resultSet;
+
+   /**
+    * Read all columns of each row, encoded by {@link JdbcColumns}, instead of just the first one?.
+    */
+   private final boolean columns;
+
+   /**
+    * Statistics to report fetched rows to.
+    */
+   private final JdbcLoadStatistics statistics;
+
+   /**
+    * Time spent fetching rows in ns.
+    */
+   private long fetch = 0;
+
+   /**
+    * Current row.
+    */
+   private String row = "";
+
+   /**
+    * Position in the current row.
+    */
+   private int position = 0;
+
+   /**
+    * Is a line break pending before the current row?.
+    */
+   private boolean separator = false;
+
+   /**
+    * Number of rows read so far.
+    */
+   private int rows = 0;
+
+   /**
+    * Has the result set been exhausted or has the reader been closed?.
+    */
+   private boolean closed = false;
+
+   /**
+    * Constructor.
+    *
+    * @param connection
+    *           Connection the result set has been fetched from.
+    * @param autoCommit
+    *           Auto commit mode of the connection to restore on close.
+    * @param statement
+    *           Statement the result set has been fetched with.
+    * @param resultSet
+    *           Result set.
+    * @param columns
+    *           Read all columns of each row, encoded by {@link JdbcColumns}, instead of just the first one?.
+    * @param statistics
+    *           Statistics to report fetched rows to.
+    */
+   ResultSetReader(Connection connection, boolean autoCommit, Statement statement, ResultSet resultSet,
+         boolean columns, JdbcLoadStatistics statistics) {
+      this.connection = checkNotNull(connection);
+      this.autoCommit = autoCommit;
+      this.statement = checkNotNull(statement);
+      this.resultSet = checkNotNull(resultSet);
+      this.columns = columns;
+      this.statistics = checkNotNull(statistics);
+   }
+
+   @Override
+   public int read(char[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+         return 0;
+      }
+
+      int read = 0;
+      while (read < length) {
+         if (separator) {
+            buffer[offset + read++] = '\n';
+            separator = false;
+
+         } else if (position < row.length()) {
+            int count = Math.min(length - read, row.length() - position);
+            row.getChars(position, position + count, buffer, offset + read);
+            position += count;
+            read += count;
+
+         } else if (!nextRow()) {
+            break;
+         }
+      }
+
+      return read > 0 ? read : -1;
+   }
+
+   /**
+    * Fetch next row.
+    *
+    * @return Whether there has been a next row.
+    */
+   private boolean nextRow() throws IOException {
+      if (closed) {
+         return false;
+      }
+
+      try {
+         long start = System.nanoTime();
+         boolean next = resultSet.next();
+         fetch += System.nanoTime() - start;
+         if (!next) {
+            close();
+            return false;
+         }
+
+         String value = columns ? JdbcColumns.encode(resultSet) : resultSet.getString(1);
+         row = value != null ? value : "";
+         position = 0;
+         separator = rows++ > 0;
+         return true;
+
+      } catch (SQLException e) {
+         close();
+         throw new IOException("Failed to load data from the database", e);
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (closed) {
+         return;
+      }
+      closed = true;
+
+      logger.info("Loaded {} lines", rows);
+      statistics.fetched(fetch, rows);
+      try {
+         DbUtils.closeQuietly(resultSet);
+         DbUtils.closeQuietly(statement);
+         // Ends the read only transaction too.
+         connection.setAutoCommit(autoCommit);
+      } catch (SQLException e) {
+         logger.warn("Failed to restore auto commit mode: {}.", e.getMessage());
+      } finally {
+         DbUtils.closeQuietly(connection);
+      }
+   }
+}
@@ -1,15 +1,20 @@
 package com.s24.search.solr.analysis.jdbc;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.Reader;
 import java.io.StringReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.slf4j.Logger;
@@ -39,20 +44,65 @@ public class SimpleJdbcReader implements JdbcReader {
     */
    protected final boolean ignore;
 
+   /**
+    * Fetch size for streaming the result. If not positive, the whole result is loaded at once.
+    */
+   private final int fetchSize;
+
+   /**
+    * SQL to load a fingerprint of the data. Optional.
+    */
+   private final String fingerprintSql;
+
+   /**
+    * Name of the unique key column for keyset pagination. Optional.
+    */
+   private final String keyColumn;
+
+   /**
+    * Maximum number of rows per page for keyset pagination.
+    */
+   private final int pageSize;
+
+   /**
+    * Read all columns of each row, encoded by {@link JdbcColumns}, instead of just the first one?.
+    */
+   private boolean columns = false;
+
    /**
     * The data source.
     */
    protected DataSource dataSource = null;
 
    /**
-    * Default single line {@link ResultSetHandler}.
+    * Statistics about the loads.
     */
-   private final static ResultSetHandler<List<String>> SINGLE_LINE_RESULT_SET_HANDLER = rs -> {
-      List<String> result = Lists.newArrayList();
-      while (rs.next()) {
-         result.add(rs.getString(1));
+   private final JdbcLoadStatistics statistics = new JdbcLoadStatistics();
+
+   /**
+    * Limiter for reloads. Null, if reloads are not limited.
+    */
+   private JdbcReloadLimiter reloadLimiter = null;
+
+   /**
+    * Schedule for periodic refreshes. Null, if not refreshed periodically.
+    */
+   private JdbcRefreshSchedule refreshSchedule = null;
+
+   /**
+    * Fingerprint {@link ResultSetHandler}: Joins all columns of the first row.
+    */
+   private final static ResultSetHandler<String> FINGERPRINT_RESULT_SET_HANDLER = rs -> {
+      if (!rs.next()) {
+         return "";
       }
-      return result;
+
+      int columns = rs.getMetaData().getColumnCount();
+      StringBuilder result = new StringBuilder();
+      for (int i = 1; i <= columns; i++) {
+         result.append(rs.getString(i)).append('|');
+      }
+      return result.toString();
    };
 
    /**
@@ -67,19 +117,94 @@ public class SimpleJdbcReader implements JdbcReader {
     *           Ignore a missing database?.
     */
    protected SimpleJdbcReader(DataSource dataSource, String sql, boolean ignore) {
+      this(dataSource, sql, ignore, 0);
+   }
+
+   /**
+    * Constructor.
+    * Concrete constructors of sub classes should invoke {@link #checkDatasource()}.
+    *
+    * @param dataSource
+    *           Data source, if null reader fails silently.
+    * @param sql
+    *           SQL.
+    * @param ignore
+    *           Ignore a missing database?.
+    * @param fetchSize
+    *           Fetch size for streaming the result. If not positive, the whole result is loaded at once.
+    */
+   protected SimpleJdbcReader(DataSource dataSource, String sql, boolean ignore, int fetchSize) {
+      this(dataSource, sql, ignore, fetchSize, null);
+   }
+
+   /**
+    * Constructor.
+    * Concrete constructors of sub classes should invoke {@link #checkDatasource()}.
+    *
+    * @param dataSource
+    *           Data source, if null reader fails silently.
+    * @param sql
+    *           SQL.
+    * @param ignore
+    *           Ignore a missing database?.
+    * @param fetchSize
+    *           Fetch size for streaming the result. If not positive, the whole result is loaded at once.
+    * @param fingerprintSql
+    *           SQL to load a fingerprint of the data. Optional.
+    */
+   protected SimpleJdbcReader(DataSource dataSource, String sql, boolean ignore, int fetchSize, String fingerprintSql) {
+      this(dataSource, sql, ignore, fetchSize, fingerprintSql, null, 0);
+   }
+
+   /**
+    * Constructor.
+    * Concrete constructors of sub classes should invoke {@link #checkDatasource()}.
+    *
+    * @param dataSource
+    *           Data source, if null reader fails silently.
+    * @param sql
+    *           SQL.
+    * @param ignore
+    *           Ignore a missing database?.
+    * @param fetchSize
+    *           Fetch size for streaming the result. If not positive, the whole result is loaded at once.
+    * @param fingerprintSql
+    *           SQL to load a fingerprint of the data. Optional.
+    * @param keyColumn
+    *           Name of the unique key column for keyset pagination. Optional.
+    * @param pageSize
+    *           Maximum number of rows per page for keyset pagination.
+    */
+   protected SimpleJdbcReader(DataSource dataSource, String sql, boolean ignore, int fetchSize, String fingerprintSql,
+         String keyColumn, int pageSize) {
+      checkArgument(keyColumn == null || pageSize > 0, "The page size has to be positive.");
       this.dataSource = dataSource;
       this.sql = checkNotNull(sql);
       this.ignore = ignore;
+      this.fetchSize = fetchSize;
+      this.fingerprintSql = fingerprintSql;
+      this.keyColumn = keyColumn;
+      this.pageSize = pageSize;
 
       checkDatasource();
    }
 
    /**
     * Check if the datasource is able to provide connections.
+    * For a {@link PooledDataSource} the health published by its validation is used instead of opening a connection.
     */
    protected final void checkDatasource() {
       // Check database connection information of data source
-      if (dataSource != null) {
+      if (dataSource instanceof PooledDataSource) {
+         if (!((PooledDataSource) dataSource).isHealthy()) {
+            dataSource = null;
+            logger.error("Database of data source is not available.");
+            if (!ignore) {
+               throw new IllegalArgumentException("Database of data source is not available.");
+            }
+         }
+
+      } else if (dataSource != null) {
          //noinspection unused,EmptyTryBlock
          try (Connection connection = dataSource.getConnection()) {
             // Just get the connection to check if data source parameters are configured correctly.
@@ -105,19 +230,100 @@ public class SimpleJdbcReader implements JdbcReader {
          throw new IllegalArgumentException("Missing data source.");
       }
 
-      QueryRunner runner = new QueryRunner(dataSource);
+      if (keyColumn != null) {
+         logger.info("Paging data using {} with key {} and page size {}", sql, keyColumn, pageSize);
+         return new KeysetReader(dataSource, sql, keyColumn, pageSize, fetchSize, statistics);
+      }
+
+      if (fetchSize > 0) {
+         return getStreamingReader();
+      }
+
+      Connection connection = null;
       try {
          logger.info("Querying for data using {}", sql);
-         List<String> content = runner.query(sql, SINGLE_LINE_RESULT_SET_HANDLER);
+         long start = System.nanoTime();
+         connection = dataSource.getConnection();
+         long connected = System.nanoTime();
+         statistics.connected(connected - start);
+
+         List<String> content = new QueryRunner().query(connection, sql, rs -> {
+            long executed = System.nanoTime();
+            statistics.executed(executed - connected);
+            List<String> lines = readLines(rs);
+            statistics.fetched(System.nanoTime() - executed, lines.size());
+            return lines;
+         });
          logger.info("Loaded {} lines", content.size());
 
          // return joined
          return new StringReader(Joiner.on('\n').join(content));
       } catch (SQLException e) {
          throw new IllegalArgumentException("Failed to load data from the database", e);
+      } finally {
+         DbUtils.closeQuietly(connection);
       }
    }
 
+   /**
+    * Streams the result via a forward only cursor, fetching {@link #fetchSize} rows at once.
+    *
+    * @return {@link ResultSetReader} which closes the connection when exhausted or closed.
+    */
+   private Reader getStreamingReader() {
+      try {
+         logger.info("Streaming data using {} with fetch size {}", sql, fetchSize);
+         return stream(sql);
+      } catch (SQLException e) {
+         throw new IllegalArgumentException("Failed to load data from the database", e);
+      }
+   }
+
+   /**
+    * Execute a query and stream its result via a forward only cursor, fetching {@link #fetchSize} rows at once.
+    *
+    * @param sql
+    *           SQL to execute.
+    * @return {@link ResultSetReader} which closes the connection when exhausted or closed.
+    */
+   protected final ResultSetReader stream(String sql) throws SQLException {
+      Connection connection = null;
+      PreparedStatement statement = null;
+      try {
+         long start = System.nanoTime();
+         connection = dataSource.getConnection();
+         long connected = System.nanoTime();
+         statistics.connected(connected - start);
+         boolean autoCommit = connection.getAutoCommit();
+         // Some drivers, e.g. PostgreSQL, use cursors only outside of auto commit mode.
+         connection.setAutoCommit(false);
+         statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+         statement.setFetchSize(fetchSize);
+         ResultSet resultSet = statement.executeQuery();
+         statistics.executed(System.nanoTime() - connected);
+         return new ResultSetReader(connection, autoCommit, statement, resultSet, columns, statistics);
+      } catch (SQLException | RuntimeException e) {
+         DbUtils.closeQuietly(statement);
+         DbUtils.closeQuietly(connection);
+         throw e;
+      }
+   }
+
+   /**
+    * Read all rows of a result set as lines.
+    *
+    * @param rs
+    *           Result set.
+    * @return Lines.
+    */
+   private List<String> readLines(ResultSet rs) throws SQLException {
+      List<String> result = Lists.newArrayList();
+      while (rs.next()) {
+         result.add(columns ? JdbcColumns.encode(rs) : rs.getString(1));
+      }
+      return result;
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -138,4 +344,91 @@ public class SimpleJdbcReader implements JdbcReader {
    public String getSql() {
       return sql;
    }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String getFingerprint() {
+      if (fingerprintSql == null || dataSource == null) {
+         return null;
+      }
+
+      try {
+         return new QueryRunner(dataSource).query(fingerprintSql, FINGERPRINT_RESULT_SET_HANDLER);
+      } catch (SQLException e) {
+         // Unknown fingerprint forces a reload.
+         logger.warn("Failed to load fingerprint using {}: {}.", fingerprintSql, e.getMessage());
+         return null;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Object getIdentity() {
+      return dataSource != null ? Arrays.asList(dataSource, sql, columns) : null;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public JdbcLoadStatistics getLoadStatistics() {
+      return statistics;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public JdbcReloadLimiter getReloadLimiter() {
+      return reloadLimiter;
+   }
+
+   /**
+    * Limit the reloads of dictionaries using this reader.
+    *
+    * @param minInterval
+    *           Minimum interval between two reloads in ms. If not positive, the interval is not limited.
+    * @param loadsPerMinute
+    *           Maximum number of reloads per minute of all dictionaries using the data source.
+    *           If not positive, the reloads per data source are not limited.
+    */
+   void limitReloads(long minInterval, int loadsPerMinute) {
+      if (dataSource != null && (minInterval > 0 || loadsPerMinute > 0)) {
+         this.reloadLimiter = new JdbcReloadLimiter(dataSource, minInterval, loadsPerMinute);
+      }
+   }
+
+   /**
+    * Read all columns of each row, encoded by {@link JdbcColumns}, instead of just the first one.
+    */
+   void readColumns() {
+      checkArgument(keyColumn == null, "Reading all columns can't be combined with keyset pagination.");
+      this.columns = true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public JdbcRefreshSchedule getRefreshSchedule() {
+      return refreshSchedule;
+   }
+
+   /**
+    * Refresh dictionaries using this reader periodically.
+    *
+    * @param interval
+    *           Interval between two refreshes in ms. If not positive, dictionaries are not refreshed periodically.
+    * @param jitter
+    *           Maximum random jitter added to the interval in ms.
+    */
+   void refreshPeriodically(long interval, long jitter) {
+      if (dataSource != null && interval > 0) {
+         this.refreshSchedule = new JdbcRefreshSchedule(interval, jitter);
+      }
+   }
 }
@@ -0,0 +1,275 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * {@link JdbcReader} which records the data of each complete load from the database in a snapshot file.
+ * The snapshot contains the fingerprint of the data in its first line, followed by the data.
+ * The snapshot file is named after the data source and the SQL, so data sources sharing a snapshot directory
+ * don't overwrite their snapshots.
+ *
+ * The snapshot is used to serve data immediately during startup and if the database is missing.
+ */
+class SnapshotJdbcReader implements JdbcReader {
+   /**
+    * Logger.
+    */
+   private static final Logger logger = LoggerFactory.getLogger(SnapshotJdbcReader.class);
+
+   /**
+    * Database based reader.
+    */
+   private final JdbcReader reader;
+
+   /**
+    * Snapshot file.
+    */
+   private final Path file;
+
+   /**
+    * Constructor.
+    *
+    * @param reader
+    *           Database based reader.
+    * @param directory
+    *           Directory for the snapshot files.
+    * @param dataSourceName
+    *           Name of the data source.
+    */
+   SnapshotJdbcReader(JdbcReader reader, Path directory, String dataSourceName) {
+      this.reader = checkNotNull(reader);
+      String identity = String.valueOf(dataSourceName) + '\n' + reader.getSql();
+      this.file = directory.resolve(Hashing.sha1().hashString(identity, StandardCharsets.UTF_8) + ".snapshot");
+   }
+
+   /**
+    * Reads from the database and records the data in the snapshot.
+    * If the database is missing, the data is read from the snapshot.
+    */
+   @Override
+   public Reader getReader() {
+      return getReader(reader.getFingerprint());
+   }
+
+   /**
+    * Reads from the database and records the data in the snapshot, together with the given fingerprint.
+    * If the database is missing, the data is read from the snapshot.
+    */
+   @Override
+   public Reader getReader(String fingerprint) {
+      if (reader.getJdbcRunner() == null) {
+         JdbcReader snapshot = getSnapshot();
+         if (snapshot != null) {
+            logger.warn("Missing database, using snapshot {}.", file);
+            return snapshot.getReader();
+         }
+      }
+
+      try {
+         Files.createDirectories(file.getParent());
+         Path temp = Files.createTempFile(file.getParent(), "jdbc", ".tmp");
+         Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+         writer.write(fingerprint != null ? fingerprint : "");
+         writer.write('\n');
+         return new RecordingReader(reader.getReader(fingerprint), writer, temp);
+      } catch (IOException e) {
+         logger.warn("Failed to record snapshot {}: {}.", file, e.getMessage());
+         return reader.getReader(fingerprint);
+      }
+   }
+
+   @Override
+   public QueryRunner getJdbcRunner() {
+      return reader.getJdbcRunner();
+   }
+
+   @Override
+   public String getSql() {
+      return reader.getSql();
+   }
+
+   @Override
+   public String getFingerprint() {
+      return reader.getFingerprint();
+   }
+
+   @Override
+   public Object getIdentity() {
+      return reader.getIdentity();
+   }
+
+   @Override
+   public JdbcLoadStatistics getLoadStatistics() {
+      return reader.getLoadStatistics();
+   }
+
+   @Override
+   public JdbcReloadLimiter getReloadLimiter() {
+      return reader.getReloadLimiter();
+   }
+
+   @Override
+   public JdbcRefreshSchedule getRefreshSchedule() {
+      return reader.getRefreshSchedule();
+   }
+
+   @Override
+   public void loaded() {
+      reader.loaded();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public JdbcReader getSnapshot() {
+      if (!Files.isReadable(file)) {
+         return null;
+      }
+
+      try (BufferedReader snapshot = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+         String fingerprint = snapshot.readLine();
+         return new Snapshot(fingerprint == null || fingerprint.isEmpty() ? null : fingerprint);
+      } catch (IOException e) {
+         logger.warn("Failed to read snapshot {}: {}.", file, e.getMessage());
+         return null;
+      }
+   }
+
+   /**
+    * {@link JdbcReader} reading the data from the snapshot.
+    */
+   private class Snapshot implements JdbcReader {
+      /**
+       * Fingerprint of the snapshot.
+       */
+      private final String fingerprint;
+
+      /**
+       * Constructor.
+       *
+       * @param fingerprint
+       *           Fingerprint of the snapshot.
+       */
+      Snapshot(String fingerprint) {
+         this.fingerprint = fingerprint;
+      }
+
+      @Override
+      public Reader getReader() {
+         try {
+            BufferedReader snapshot = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            // Skip fingerprint.
+            snapshot.readLine();
+            return snapshot;
+         } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read snapshot.", e);
+         }
+      }
+
+      @Override
+      public QueryRunner getJdbcRunner() {
+         return reader.getJdbcRunner();
+      }
+
+      @Override
+      public String getSql() {
+         return reader.getSql();
+      }
+
+      @Override
+      public String getFingerprint() {
+         return fingerprint;
+      }
+   }
+
+   /**
+    * {@link Reader} which copies all read data into the snapshot.
+    * The snapshot is replaced only, if the data has been read completely.
+    */
+   private class RecordingReader extends FilterReader {
+      /**
+       * Writer for the temporary snapshot file.
+       */
+      private final Writer writer;
+
+      /**
+       * Temporary snapshot file.
+       */
+      private final Path temp;
+
+      /**
+       * Has the data been read completely?.
+       */
+      private boolean complete = false;
+
+      /**
+       * Constructor.
+       *
+       * @param in
+       *           Reader for the data.
+       * @param writer
+       *           Writer for the temporary snapshot file.
+       * @param temp
+       *           Temporary snapshot file.
+       */
+      RecordingReader(Reader in, Writer writer, Path temp) {
+         super(in);
+         this.writer = writer;
+         this.temp = temp;
+      }
+
+      @Override
+      public int read() throws IOException {
+         int c = super.read();
+         if (c < 0) {
+            complete = true;
+         } else {
+            writer.write(c);
+         }
+         return c;
+      }
+
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+         int read = super.read(buffer, offset, length);
+         if (read < 0) {
+            complete = true;
+         } else {
+            writer.write(buffer, offset, read);
+         }
+         return read;
+      }
+
+      @Override
+      public void close() throws IOException {
+         try {
+            super.close();
+         } finally {
+            writer.close();
+            if (complete) {
+               Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+               logger.info("Recorded snapshot {}.", file);
+            } else {
+               Files.deleteIfExists(temp);
+            }
+         }
+      }
+   }
+}
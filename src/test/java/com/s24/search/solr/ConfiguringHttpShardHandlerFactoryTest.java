@@ -1,15 +1,27 @@
 package com.s24.search.solr;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.PluginInfo;
+import org.apache.solr.handler.component.HttpShardHandlerFactory;
 import org.apache.solr.schema.IndexSchema;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.After;
@@ -19,6 +31,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.s24.search.solr.analysis.jdbc.PooledDataSource;
+
 /**
  * Test for {@link ConfiguringHttpShardHandlerFactory}.
  */
@@ -61,4 +75,136 @@ public class ConfiguringHttpShardHandlerFactoryTest {
       assertEquals("password", jdbcDataSource.getPassword());
       assertEquals(100, jdbcDataSource.getLoginTimeout());
    }
-}
\ No newline at end of file
+
+   /**
+    * Test for {@link ConfiguringHttpShardHandlerFactory#close()}: Closes {@link AutoCloseable} beans.
+    */
+   @Test
+   public void close() throws Exception {
+      NamedList<Object> poolConfig = new NamedList<>();
+      poolConfig.add("class", PooledDataSource.class.getName());
+      poolConfig.add("url", "jdbc:h2:mem:factory;DB_CLOSE_DELAY=-1");
+
+      Map<String, Object> shardHandlerConfig = new HashMap<>();
+      NamedList<Object> beans = new NamedList<>();
+      beans.add("dataSource", poolConfig);
+      shardHandlerConfig.put("beans", beans);
+      ConfiguringHttpShardHandlerFactory factory = new ConfiguringHttpShardHandlerFactory();
+      factory.init(new PluginInfo("shardHandler", shardHandlerConfig));
+
+      PooledDataSource dataSource = ConfiguringHttpShardHandlerFactory.lookUp("dataSource", PooledDataSource.class);
+      dataSource.getConnection().close();
+      assertEquals(1, dataSource.getOpenConnections());
+
+      factory.close();
+      assertNull(ConfiguringHttpShardHandlerFactory.lookUp("dataSource"));
+      assertEquals(0, dataSource.getOpenConnections());
+   }
+
+   /**
+    * Test for {@link ConfiguringHttpShardHandlerFactory#makeURLList(String)} with adaptive replica selection.
+    */
+   @Test
+   public void makeURLList_adaptive() {
+      Map<String, Object> shardHandlerConfig = new HashMap<>();
+      shardHandlerConfig.put(ConfiguringHttpShardHandlerFactory.ADAPTIVE_REPLICA_SELECTION, "true");
+      ConfiguringHttpShardHandlerFactory factory = new ConfiguringHttpShardHandlerFactory();
+      factory.init(new PluginInfo("shardHandler", shardHandlerConfig));
+      try {
+         String slow = "http://replica1/solr/core";
+         String fast = "http://replica2/solr/core";
+         for (int i = 0; i < 10; i++) {
+            factory.getReplicaStatistics(slow).succeeded(100);
+            factory.getReplicaStatistics(fast).succeeded(10);
+         }
+
+         for (int i = 0; i < 10; i++) {
+            assertEquals(Arrays.asList(fast, slow), factory.makeURLList(slow + "|" + fast));
+         }
+
+         NamedList<?> statistics = factory.getStatistics();
+         assertEquals(2, statistics.size());
+         assertEquals(10L, ((NamedList<?>) statistics.get(slow)).get("requests"));
+
+      } finally {
+         factory.close();
+      }
+   }
+
+   /**
+    * Test for {@link ConfiguringHttpShardHandlerFactory#makeLoadBalancedRequest(QueryRequest, java.util.List)}:
+    * Records the replicas before the responding one as failed, even if the load balancer normalized its URL.
+    */
+   @Test
+   public void makeLoadBalancedRequest() throws Exception {
+      ConfiguringHttpShardHandlerFactory factory = new ConfiguringHttpShardHandlerFactory();
+      factory.init(new PluginInfo("shardHandler", new HashMap<>()));
+      try {
+         String failing = "http://replica1/solr/core/";
+         String responding = "http://replica2/solr/core/";
+         LBHttpSolrClient.Rsp rsp = mock(LBHttpSolrClient.Rsp.class);
+         when(rsp.getServer()).thenReturn("http://replica2/solr/core");
+         LBHttpSolrClient loadBalancer = mockLoadBalancer(factory);
+         when(loadBalancer.request(any(LBHttpSolrClient.Req.class))).thenReturn(rsp);
+
+         assertSame(rsp, factory.makeLoadBalancedRequest(new QueryRequest(), Arrays.asList(failing, responding)));
+
+         assertStatistics(factory.getReplicaStatistics(failing), 1, 1);
+         assertStatistics(factory.getReplicaStatistics(responding), 1, 0);
+         assertEquals(1L, factory.getReplicaStatistics(responding).toNamedList().get("recentLatencies"));
+      } finally {
+         factory.close();
+      }
+   }
+
+   /**
+    * Test for {@link ConfiguringHttpShardHandlerFactory#makeLoadBalancedRequest(QueryRequest, java.util.List)}:
+    * Records all replicas as failed, if none responded.
+    */
+   @Test
+   public void makeLoadBalancedRequest_failed() throws Exception {
+      Map<String, Object> shardHandlerConfig = new HashMap<>();
+      shardHandlerConfig.put(ConfiguringHttpShardHandlerFactory.HEDGE_PERCENTILE, "95");
+      ConfiguringHttpShardHandlerFactory factory = new ConfiguringHttpShardHandlerFactory();
+      factory.init(new PluginInfo("shardHandler", shardHandlerConfig));
+      try {
+         String replica1 = "http://replica1/solr/core";
+         String replica2 = "http://replica2/solr/core";
+         LBHttpSolrClient loadBalancer = mockLoadBalancer(factory);
+         when(loadBalancer.request(any(LBHttpSolrClient.Req.class))).thenThrow(new SolrServerException("down"));
+
+         try {
+            factory.makeLoadBalancedRequest(new QueryRequest(), Arrays.asList(replica1, replica2));
+            fail("Expected SolrServerException");
+         } catch (SolrServerException e) {
+            assertEquals("down", e.getMessage());
+         }
+
+         assertStatistics(factory.getReplicaStatistics(replica1), 1, 1);
+         assertStatistics(factory.getReplicaStatistics(replica2), 1, 1);
+      } finally {
+         factory.close();
+      }
+   }
+
+   /**
+    * Replace the load balancer of a factory with a mock.
+    */
+   private static LBHttpSolrClient mockLoadBalancer(ConfiguringHttpShardHandlerFactory factory) throws Exception {
+      LBHttpSolrClient loadBalancer = mock(LBHttpSolrClient.class);
+      Field field = HttpShardHandlerFactory.class.getDeclaredField("loadbalancer");
+      field.setAccessible(true);
+      field.set(factory, loadBalancer);
+      return loadBalancer;
+   }
+
+   /**
+    * Assert the statistics of a replica without requests in flight.
+    */
+   private static void assertStatistics(ReplicaStatistics statistics, long requests, long errors) {
+      NamedList<Object> values = statistics.toNamedList();
+      assertEquals(requests, values.get("requests"));
+      assertEquals(errors, values.get("errors"));
+      assertEquals(0, values.get("inFlight"));
+   }
+}
@@ -0,0 +1,63 @@
+package com.s24.search.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+   /**
+    * Test for {@link LatencyHistogram#getValueAtPercentile(double, long)}.
+    */
+   @Test
+   public void getValueAtPercentile() {
+      LatencyHistogram histogram = new LatencyHistogram(60000);
+      assertEquals(-1, histogram.getValueAtPercentile(50, 0));
+
+      for (long latency = 1; latency <= 100; latency++) {
+         histogram.record(latency);
+      }
+      assertEquals(100, histogram.getCount());
+      assertEquals(-1, histogram.getValueAtPercentile(50, 101));
+
+      // Exact below 16 ms.
+      assertEquals(10, histogram.getValueAtPercentile(10, 0));
+      // Relative precision of 1/8 above.
+      assertBetween(50, 50 * 9 / 8, histogram.getValueAtPercentile(50, 0));
+      assertBetween(95, 95 * 9 / 8, histogram.getValueAtPercentile(95, 0));
+      assertBetween(100, 100 * 9 / 8, histogram.getValueAtPercentile(100, 0));
+   }
+
+   /**
+    * Test for {@link LatencyHistogram#record(long)} with extreme latencies.
+    */
+   @Test
+   public void record_extreme() {
+      LatencyHistogram histogram = new LatencyHistogram(60000);
+      histogram.record(-1);
+      histogram.record(Long.MAX_VALUE);
+      assertEquals(0, histogram.getValueAtPercentile(50, 0));
+      assertEquals((1L << 32) - 1, histogram.getValueAtPercentile(100, 0));
+   }
+
+   /**
+    * Test for forgetting latencies, which are no longer recent.
+    */
+   @Test
+   public void window() throws Exception {
+      LatencyHistogram histogram = new LatencyHistogram(50);
+      histogram.record(10);
+      assertEquals(1, histogram.getCount());
+
+      // Two idle windows later, the latency is no longer recent.
+      Thread.sleep(150);
+      assertEquals(0, histogram.getCount());
+   }
+
+   private static void assertBetween(long min, long max, long value) {
+      assertTrue(value + " not in [" + min + ", " + max + "]", min <= value && value <= max);
+   }
+}
@@ -0,0 +1,80 @@
+package com.s24.search.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+/**
+ * Test for {@link ReplicaStatistics}.
+ */
+public class ReplicaStatisticsTest {
+   /**
+    * Test for {@link ReplicaStatistics#score()}.
+    */
+   @Test
+   public void score() {
+      ReplicaStatistics fast = replica(10, 0);
+      ReplicaStatistics slow = replica(100, 0);
+      ReplicaStatistics failing = replica(10, 50);
+      assertTrue(fast.score() < slow.score());
+      assertTrue(fast.score() < failing.score());
+
+      // Unknown replicas are tried.
+      assertTrue(new ReplicaStatistics(60000).score() < fast.score());
+
+      // Requests in flight make a replica less attractive.
+      for (int i = 0; i < 10; i++) {
+         fast.started();
+      }
+      assertEquals(10, fast.getInFlight());
+      assertTrue(fast.score() > slow.score());
+      for (int i = 0; i < 10; i++) {
+         fast.finished();
+      }
+      assertTrue(fast.score() < slow.score());
+   }
+
+   /**
+    * Test for {@link ReplicaStatistics#getErrorRate()}.
+    */
+   @Test
+   public void getErrorRate() {
+      ReplicaStatistics replica = replica(10, 100);
+      assertTrue(replica.getErrorRate() > 0.9);
+
+      // Replicas recover.
+      for (int i = 0; i < 100; i++) {
+         replica.succeeded(10);
+      }
+      assertTrue(replica.getErrorRate() < 0.1);
+   }
+
+   /**
+    * Test for {@link ReplicaStatistics#toNamedList()}.
+    */
+   @Test
+   public void toNamedList() {
+      NamedList<Object> statistics = replica(10, 5).toNamedList();
+      assertEquals(105L, statistics.get("requests"));
+      assertEquals(5L, statistics.get("errors"));
+      assertEquals(0, statistics.get("inFlight"));
+      assertEquals(100L, statistics.get("recentLatencies"));
+      assertEquals(10L, statistics.get("recentLatencyP50"));
+   }
+
+   /**
+    * Replica with 100 successful requests of the given latency, followed by failures.
+    */
+   private static ReplicaStatistics replica(long latency, int errors) {
+      ReplicaStatistics result = new ReplicaStatistics(60000);
+      for (int i = 0; i < 100; i++) {
+         result.succeeded(latency);
+      }
+      for (int i = 0; i < errors; i++) {
+         result.failed();
+      }
+      return result;
+   }
+}
@@ -0,0 +1,124 @@
+package com.s24.search.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test for {@link ShardRequestHedger}.
+ * Replicas are local stand-ins, which respond with their URL after a configurable latency.
+ */
+public class ShardRequestHedgerTest {
+   /**
+    * URLs of the replicas of the shard.
+    */
+   private static final List<String> REPLICAS = Arrays.asList("http://replica1/solr", "http://replica2/solr");
+
+   /**
+    * Hedger under test.
+    */
+   private ShardRequestHedger hedger = new ShardRequestHedger(90, 0, 60000, 10);
+
+   /**
+    * Latency of the replicas in ms by URL.
+    */
+   private final Map<String, Long> latencies = new ConcurrentHashMap<>();
+
+   /**
+    * Number of requests per replica.
+    */
+   private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+   @After
+   public void tearDown() {
+      hedger.close();
+   }
+
+   /**
+    * Test for {@link ShardRequestHedger#request(List, ShardRequestHedger.Attempt)}.
+    */
+   @Test
+   public void request() throws Exception {
+      latencies.put(REPLICAS.get(0), 1L);
+      latencies.put(REPLICAS.get(1), 1L);
+
+      // Not hedged until enough latencies have been recorded.
+      for (int i = 0; i < ShardRequestHedger.MIN_SAMPLES; i++) {
+         assertEquals(REPLICAS.get(0), hedger.request(REPLICAS, this::replica));
+      }
+      assertEquals(0, requests(REPLICAS.get(1)));
+      assertTrue(hedger.getHedgeDelay(REPLICAS) >= 0);
+
+      // Slow first replica: The second one wins.
+      latencies.put(REPLICAS.get(0), 1000L);
+      long start = System.nanoTime();
+      assertEquals(REPLICAS.get(1), hedger.request(REPLICAS, this::replica));
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+      assertEquals(1, requests(REPLICAS.get(1)));
+
+      // Just the latency of the slow first request gets recorded, not the one of the hedge.
+      Thread.sleep(1500);
+      assertEquals(ShardRequestHedger.MIN_SAMPLES + 1, hedger.getLatencyCount(REPLICAS));
+   }
+
+   /**
+    * Test for {@link ShardRequestHedger#request(List, ShardRequestHedger.Attempt)} with all threads busy.
+    */
+   @Test
+   public void request_saturated() throws Exception {
+      hedger.close();
+      hedger = new ShardRequestHedger(90, 0, 60000, 1);
+      latencies.put(REPLICAS.get(0), 1L);
+      latencies.put(REPLICAS.get(1), 1L);
+      for (int i = 0; i < ShardRequestHedger.MIN_SAMPLES; i++) {
+         hedger.request(REPLICAS, this::replica);
+      }
+
+      // The first request occupies the only thread: Not hedged.
+      latencies.put(REPLICAS.get(0), 200L);
+      assertEquals(REPLICAS.get(0), hedger.request(REPLICAS, this::replica));
+      assertEquals(0, requests(REPLICAS.get(1)));
+   }
+
+   /**
+    * Test for {@link ShardRequestHedger#request(List, ShardRequestHedger.Attempt)} with a failing replica.
+    */
+   @Test(expected = SolrServerException.class)
+   public void request_failure() throws Exception {
+      hedger.request(REPLICAS, urls -> {
+         throw new SolrServerException("No live replica.");
+      });
+   }
+
+   /**
+    * Stand-in replica: Responds with the URL of the first replica after its latency.
+    */
+   private String replica(List<String> urls) throws SolrServerException {
+      String url = urls.get(0);
+      requests.computeIfAbsent(url, key -> new AtomicInteger()).incrementAndGet();
+      try {
+         Thread.sleep(latencies.get(url));
+      } catch (InterruptedException e) {
+         throw new SolrServerException("Interrupted.", e);
+      }
+      return url;
+   }
+
+   /**
+    * Number of requests to a replica.
+    */
+   private int requests(String url) {
+      AtomicInteger result = requests.get(url);
+      return result != null ? result.get() : 0;
+   }
+}
@@ -1,16 +1,30 @@
 package com.s24.search.solr.analysis;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.lang.reflect.Field;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
 import org.apache.lucene.analysis.core.WhitespaceTokenizerFactory;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
 import org.apache.solr.analysis.TokenizerChain;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.search.SolrIndexSearcher;
@@ -120,6 +134,96 @@ public class SearcherAwareReloaderTest {
       verify(queryTokenFilterFactory, never()).inform(searcher);
    }
 
+   /**
+    * Test for {@link SearcherAwareReloader#newSearcher(SolrIndexSearcher, SolrIndexSearcher)}.
+    */
+   @Test
+   public void newSearcher_async() throws Exception {
+      when(fieldType.getIndexAnalyzer()).thenReturn(indexAnalyzer);
+      when(fieldType.getQueryAnalyzer()).thenReturn(queryAnalyzer);
+
+      NamedList<Object> args = new NamedList<>();
+      args.add(SearcherAwareReloader.ASYNC, true);
+      reloader.init(args);
+
+      reloader.newSearcher(searcher, currentSearcher);
+
+      // Informed in the background.
+      verify(indexTokenFilterFactory, timeout(10000)).inform(searcher);
+      verify(queryTokenFilterFactory, timeout(10000)).inform(searcher);
+   }
+
+   /**
+    * Test for {@link SearcherAwareReloader#newSearcher(SolrIndexSearcher, SolrIndexSearcher)}:
+    * The reader of the searcher is kept open while informing in the background.
+    */
+   @Test
+   public void newSearcher_asyncReference() throws Exception {
+      when(fieldType.getIndexAnalyzer()).thenReturn(indexAnalyzer);
+      when(fieldType.getQueryAnalyzer()).thenReturn(indexAnalyzer);
+
+      try (Directory directory = new RAMDirectory()) {
+         new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer())).close();
+         DirectoryReader reader = DirectoryReader.open(directory);
+         setReader(searcher, reader);
+
+         // The searcher gets closed right after registration.
+         CountDownLatch closed = new CountDownLatch(1);
+         AtomicInteger refCount = new AtomicInteger();
+         doAnswer(invocation -> {
+            closed.await();
+            refCount.set(reader.getRefCount());
+            return null;
+         }).when(indexTokenFilterFactory).inform(searcher);
+
+         NamedList<Object> args = new NamedList<>();
+         args.add(SearcherAwareReloader.ASYNC, true);
+         reloader.init(args);
+
+         reloader.newSearcher(searcher, currentSearcher);
+         reader.decRef();
+         closed.countDown();
+
+         verify(indexTokenFilterFactory, timeout(10000)).inform(searcher);
+         assertEquals(1, refCount.get());
+         for (int i = 0; i < 100 && reader.getRefCount() > 0; i++) {
+            Thread.sleep(10);
+         }
+         assertEquals(0, reader.getRefCount());
+      }
+   }
+
+   /**
+    * Set the reader of a mocked searcher, because {@link SolrIndexSearcher#getIndexReader()} is final.
+    */
+   private static void setReader(SolrIndexSearcher searcher, DirectoryReader reader) throws Exception {
+      Field solrReader = SolrIndexSearcher.class.getDeclaredField("reader");
+      solrReader.setAccessible(true);
+      solrReader.set(searcher, reader);
+      Field luceneReader = IndexSearcher.class.getDeclaredField("reader");
+      luceneReader.setAccessible(true);
+      luceneReader.set(searcher, reader);
+   }
+
+   /**
+    * Test for {@link SearcherAwareReloader#newSearcher(SolrIndexSearcher, SolrIndexSearcher)}.
+    */
+   @Test
+   public void newSearcher_parallel() throws Exception {
+      when(fieldType.getIndexAnalyzer()).thenReturn(indexAnalyzer);
+      when(fieldType.getQueryAnalyzer()).thenReturn(queryAnalyzer);
+
+      NamedList<Object> args = new NamedList<>();
+      args.add(SearcherAwareReloader.THREADS, 2);
+      reloader.init(args);
+
+      reloader.newSearcher(searcher, currentSearcher);
+
+      // Parallel informing waits for all field types.
+      verify(indexTokenFilterFactory, times(1)).inform(searcher);
+      verify(queryTokenFilterFactory, times(1)).inform(searcher);
+   }
+
    /**
     * Dummy {@link SearcherAware} token filter factory for testing.
     */
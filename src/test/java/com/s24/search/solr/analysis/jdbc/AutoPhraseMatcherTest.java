@@ -0,0 +1,80 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link AutoPhraseMatcher}.
+ */
+public class AutoPhraseMatcherTest {
+    /**
+     * Matcher which lower cases tokens and removes whitespace in phrases.
+     */
+    private AutoPhraseMatcher matcher;
+
+    @Before
+    public void setUp() throws Exception {
+        matcher = new AutoPhraseMatcher(
+                Arrays.asList("ice cart", "ice cart wheel", "new york", "new york city", "Big  Apple", "new york"),
+                true, null);
+    }
+
+    /**
+     * Test for {@link AutoPhraseMatcher#autophrase(String)}.
+     */
+    @Test
+    public void autophrase() throws Exception {
+        assertEquals("icecart", matcher.autophrase(" ice cart "));
+        assertEquals("cheap icecart", matcher.autophrase("cheap ice cart"));
+        assertEquals("the bigapple pie", matcher.autophrase("the big apple pie"));
+        assertEquals("red shoes", matcher.autophrase("red   shoes"));
+        assertEquals("", matcher.autophrase("  "));
+    }
+
+    /**
+     * Test for {@link AutoPhraseMatcher#autophrase(String)}: The longest phrase wins.
+     */
+    @Test
+    public void autophrase_longestMatch() throws Exception {
+        assertEquals("icecartwheel shop", matcher.autophrase("ice cart wheel shop"));
+        assertEquals("newyork citys newyorkcity", matcher.autophrase("new york citys new york city"));
+        // Prefixes of phrases are kept.
+        assertEquals("ice car", matcher.autophrase("ice car"));
+        assertEquals("a ice icecart", matcher.autophrase("a ice ice cart"));
+    }
+
+    /**
+     * Test for {@link AutoPhraseMatcher#autophrase(String)}: Phrases match case insensitive.
+     */
+    @Test
+    public void autophrase_case() throws Exception {
+        assertEquals("icecart", matcher.autophrase("ICE Cart"));
+
+        AutoPhraseMatcher matcher = new AutoPhraseMatcher(Collections.singletonList("ice cart"), false, '_');
+        assertEquals("ICE_Cart Shop", matcher.autophrase("ICE Cart Shop"));
+    }
+
+    /**
+     * Test for {@link AutoPhraseMatcher#autophrase(String)} without phrases.
+     */
+    @Test
+    public void autophrase_empty() throws Exception {
+        AutoPhraseMatcher matcher = new AutoPhraseMatcher(Collections.emptyList(), true, null);
+        assertEquals("ice cart", matcher.autophrase(" Ice  cart "));
+        assertEquals(0, matcher.ramBytesUsed());
+    }
+
+    /**
+     * Test for {@link AutoPhraseMatcher#ramBytesUsed()}.
+     */
+    @Test
+    public void ramBytesUsed() {
+        assertTrue(matcher.ramBytesUsed() > 0);
+    }
+}
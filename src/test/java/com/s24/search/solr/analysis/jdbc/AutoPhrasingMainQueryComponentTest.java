@@ -0,0 +1,72 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.handler.component.ResponseBuilder;
+import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.QueryParsing;
+import org.junit.Test;
+
+/**
+ * Test for {@link AutoPhrasingMainQueryComponent}.
+ */
+public class AutoPhrasingMainQueryComponentTest {
+
+    /**
+     * Test for {@link AutoPhrasingMainQueryComponent#prepare(ResponseBuilder)}.
+     */
+    @Test
+    public void prepare() throws Exception {
+        // Main query parsed by the default parser.
+        assertEquals(Boolean.TRUE, prepare("ice cart", "autophrasing", null));
+        assertNull(prepare("ice cart", "lucene", null));
+
+        // Main query parsed by the parser of its local params.
+        assertEquals(Boolean.TRUE, prepare("{!autophrasing}ice cart", "lucene", null));
+        assertNull(prepare("{!lucene}ice cart", "autophrasing", null));
+
+        // Main query rewritten before.
+        assertNull(prepare("ice cart", "lucene", "{!lucene}ice cart"));
+        assertEquals(Boolean.TRUE, prepare("{!lucene}ice cart", "lucene", "{!autophrasing}ice cart"));
+
+        // No main query.
+        assertNull(prepare(null, "autophrasing", null));
+    }
+
+    /**
+     * Prepare a request and return the marker of the main query.
+     */
+    private Object prepare(String q, String defType, String rewritten) throws Exception {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, q);
+        params.set(QueryParsing.DEFTYPE, defType);
+
+        SolrCore core = mock(SolrCore.class);
+        when(core.getQueryPlugin("autophrasing")).thenReturn(mock(JdbcAutoPhrasingQParserPlugin.class));
+        when(core.getQueryPlugin("lucene")).thenReturn(mock(QParserPlugin.class));
+        Map<Object, Object> context = new HashMap<>();
+        SolrQueryRequest req = mock(SolrQueryRequest.class);
+        when(req.getParams()).thenReturn(params);
+        when(req.getContext()).thenReturn(context);
+        when(req.getCore()).thenReturn(core);
+
+        ResponseBuilder rb = new ResponseBuilder(req, new SolrQueryResponse(),
+                Collections.<SearchComponent>emptyList());
+        rb.setQueryString(rewritten);
+        new AutoPhrasingMainQueryComponent().prepare(rb);
+        return context.get(JdbcAutoPhrasingQParserPlugin.MAIN_QUERY);
+    }
+}
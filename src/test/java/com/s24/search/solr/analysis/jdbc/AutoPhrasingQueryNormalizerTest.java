@@ -0,0 +1,169 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link AutoPhrasingQueryNormalizer}.
+ */
+public class AutoPhrasingQueryNormalizerTest {
+    /**
+     * Queries covering operators, quotes, parentheses, units of measure and whitespace.
+     */
+    private static final String[] QUERIES = {
+            "title :shoes", "title\t:shoes", "title \t :shoes", "a : b :c", "a\t:b :c",
+            "+red -blue", "red AND (blue OR green)", "price:[10 TO 20]", "date:[NOW-1DAY TO NOW]", "ANDROID OR TOYS",
+            "\"red shoes\" cheap", "\"a\" \"b\"", "(\"red\")", "\"\"", "x\"y\" z", "12\" tv",
+            "12 lbs", "5 inches", "3\" x 4\"", "3in x 4in", "2 gallon", "1 yd", "250 ml", "5 oz", "3 qts",
+            "  red\tshoes\n", "\tAND\t", " ", ""
+    };
+
+    /**
+     * Parts of random queries.
+     */
+    private static final String[] PARTS = {
+            " ", "  ", "\t", "\n", ":", " :", "\t:", "+", "-", "(", ")", "\"", "AND", "OR", "TO", "NOW", "x", "w",
+            "1", "12", "lbs", "in", "inches", "ii", "oz", "qt", "gal", "yd", "ml", "red", "shoes", "&&", "||", "`to`",
+            "`now`", "open_quote`", "close_quote`", "[", "]"
+    };
+
+    /**
+     * Normalizer which normalizes logical operators.
+     */
+    private final AutoPhrasingQueryNormalizer normalizer = new AutoPhrasingQueryNormalizer(true);
+
+    /**
+     * Test for {@link AutoPhrasingQueryNormalizer#normalize(String)}.
+     */
+    @Test
+    public void normalize() {
+        assertEquals(" title: shoes ", normalizer.normalize("title :shoes"));
+        // Other whitespace before colons is moved only together with a space before a colon, as before.
+        assertEquals(" title\t:shoes ", normalizer.normalize("title\t:shoes"));
+        assertEquals(" a: b: c ", normalizer.normalize("a\t:b :c"));
+        assertEquals(" + red - blue ", normalizer.normalize("+red -blue"));
+        assertEquals(" red && ( blue || green ) ", normalizer.normalize("red AND (blue OR green)"));
+        assertEquals(" price:[10 `to` 20] ", normalizer.normalize("price:[10 TO 20]"));
+        assertEquals(" `now` ", normalizer.normalize("NOW"));
+        assertEquals(" open_quote` red shoes close_quote` cheap ", normalizer.normalize("\"red shoes\" cheap"));
+    }
+
+    /**
+     * Test for {@link AutoPhrasingQueryNormalizer#normalize(String)}.
+     */
+    @Test
+    public void normalize_caseSensitive() {
+        AutoPhrasingQueryNormalizer normalizer = new AutoPhrasingQueryNormalizer(false);
+        assertEquals(" red AND ( blue OR green ) ", normalizer.normalize("red AND (blue OR green)"));
+        assertEquals(" NOW ", normalizer.normalize("NOW"));
+    }
+
+    /**
+     * Test for {@link AutoPhrasingQueryNormalizer#normalize(String)}.
+     */
+    @Test
+    public void normalize_units() {
+        assertEquals(" 12lb ", normalizer.normalize("12 lbs"));
+        assertEquals(" 5in ", normalizer.normalize("5 inches"));
+        assertEquals(" 3in  4in ", normalizer.normalize("3\" x 4\""));
+        assertEquals(" 250ml ", normalizer.normalize("250 ml"));
+    }
+
+    /**
+     * Test for {@link AutoPhrasingQueryNormalizer#restore(String)}.
+     */
+    @Test
+    public void restore() {
+        assertEquals("+red -blue", normalizer.restore("+ red - blue"));
+        assertEquals("red AND (blue OR green)", normalizer.restore("red && ( blue || green )"));
+        assertEquals("price:[10 TO 20]", normalizer.restore("price:[10 `to` 20]"));
+        assertEquals("NOW", normalizer.restore("`now`"));
+        assertEquals("\"red_shoes\" cheap", normalizer.restore("open_quote` red_shoes close_quote` cheap"));
+        assertEquals("(\"red\")", normalizer.restore("( open_quote` red close_quote` )"));
+    }
+
+    /**
+     * Test for {@link AutoPhrasingQueryNormalizer#normalize(String)} and
+     * {@link AutoPhrasingQueryNormalizer#restore(String)}: Results are identical to those of the former regular expression replacements.
+     */
+    @Test
+    public void identicalToReplacements() {
+        for (String query : QUERIES) {
+            assertIdenticalToReplacements(query);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder query = new StringBuilder();
+            for (int j = random.nextInt(12); j > 0; j--) {
+                query.append(PARTS[random.nextInt(PARTS.length)]);
+            }
+            assertIdenticalToReplacements(query.toString());
+        }
+    }
+
+    /**
+     * Assert that the results for a query are identical to those of the former regular expression replacements.
+     */
+    private static void assertIdenticalToReplacements(String query) {
+        for (boolean ignoreCase : new boolean[] { true, false }) {
+            AutoPhrasingQueryNormalizer normalizer = new AutoPhrasingQueryNormalizer(ignoreCase);
+            String normalized = normalizeByReplacements(query, ignoreCase);
+            assertEquals(query, normalized, normalizer.normalize(query));
+            assertEquals(normalized, restoreByReplacements(normalized, ignoreCase), normalizer.restore(normalized));
+        }
+    }
+
+    /**
+     * Former normalization by regular expression replacements.
+     */
+    private static String normalizeByReplacements(String query, boolean ignoreCase) {
+        while (query.contains(" :")) {
+            query = query.replaceAll("\\s:", ": ");
+        }
+        query = query.replaceAll("\\+", "+ ");
+        query = query.replaceAll("\\-", "- ");
+        if (ignoreCase) {
+            query = query.replaceAll(" AND ", " && ");
+            query = query.replaceAll(" OR ", " || ");
+            query = query.replaceAll(" TO ", " `to` ");
+            query = query.replaceAll("NOW", "`now`");
+        }
+        query = query.replaceAll("\\(", "( ");
+        query = query.replaceAll("\\)", " )");
+        query = String.format(" %s ", query);
+        query = query.replaceAll("(?i)(\\d+)\\s?(pound[s]?|lb[s]?)\\b", "$1lb");
+        query = query.replaceAll("(?i)(\\d+)\\s?(inch(es)?)", "$1in ");
+        query = query.replaceAll("(?i)\\b(\\d+)\\s?(inche?s?|i+n?|[\"]+)\\s?(w|l|h|d)?(x+|\\s+|\\b+|\\s?x+|$)", "$1in ");
+        query = query.replaceAll("(?i)(\\d+)\\s?(ounce[s]?|oz)\\b", "$1oz");
+        query = query.replaceAll("(?i)(\\d+)\\s?(quart[s]?|qt[s]?)\\b", "$1qt");
+        query = query.replaceAll("(?i)(\\d+)\\s?(gallon[s]?|gal?)\\b", "$1gal");
+        query = query.replaceAll("(?i)(\\d+)\\s?(yd[s]?|yard[s]?)\\b", "$1yd");
+        query = query.replaceAll("(?i)(\\d+)\\s?(mm|cc|ml)\\b", "$1$2");
+        query = query.replaceAll("(^|\\s)\"", " open_quote` ");
+        query = query.replaceAll("\"(\\s|$)", " close_quote` ");
+        return query;
+    }
+
+    /**
+     * Former restoration by regular expression replacements.
+     */
+    private static String restoreByReplacements(String query, boolean ignoreCase) {
+        query = query.replaceAll("\\+ ", "+");
+        query = query.replaceAll("\\- ", "-");
+        if (ignoreCase) {
+            query = query.replaceAll(" && ", " AND ");
+            query = query.replaceAll(" \\|\\| ", " OR ");
+            query = query.replaceAll(" `to` ", " TO ");
+            query = query.replaceAll("`now`", "NOW");
+        }
+        query = query.replaceAll("\\( ", "(");
+        query = query.replaceAll(" \\)", ")");
+        query = query.replaceAll("open_quote`\\s", "\"");
+        query = query.replaceAll("\\sclose_quote`", "\"");
+        return query;
+    }
+}
@@ -0,0 +1,326 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParserPlugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.jndi.SimpleNamingContextBuilder;
+
+import com.s24.search.solr.ConfiguringHttpShardHandlerFactory;
+
+/**
+ * Test for {@link JdbcAutoPhrasingQParserPlugin}.
+ */
+public class JdbcAutoPhrasingQParserPluginTest {
+    /**
+     * Embedded database.
+     */
+    private EmbeddedDatabase database;
+
+    @Before
+    public void setUpDatabase() throws Exception {
+        // Create H2 database instance
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+
+        // Add phrase table with some content
+        JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("create table autophrases(autophrases varchar(256))");
+        template.execute("insert into autophrases(autophrases) values('ice cart')");
+
+        // Register data source with JNDI
+        SimpleNamingContextBuilder builder = SimpleNamingContextBuilder.emptyActivatedContextBuilder();
+        builder.bind("java:comp/env/dataSource", database);
+    }
+
+    /**
+     * Test for reloading the phrases of {@link JdbcAutoPhrasingQParserPlugin}.
+     */
+    @Test
+    public void reload() throws Exception {
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select autophrases from autophrases");
+        JdbcAutoPhrasingQParserPlugin plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+
+        assertNotEquals("ice cart", plugin.filter("ice cart"));
+        assertEquals("apple juice", plugin.filter("apple juice"));
+        assertEquals(1L, plugin.getStatistics().get("loads"));
+
+        new JdbcTemplate(database).execute("insert into autophrases(autophrases) values('apple juice')");
+        plugin.inform(new ClasspathResourceLoader());
+
+        assertNotEquals("apple juice", plugin.filter("apple juice"));
+        assertEquals(2L, plugin.getStatistics().get("loads"));
+    }
+
+    /**
+     * Test for reusing the per thread buffers of {@link JdbcAutoPhrasingQParserPlugin} across calls and reloads.
+     */
+    @Test
+    public void filter_reuse() throws Exception {
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select autophrases from autophrases");
+        args.add(JdbcAutoPhrasingQParserPlugin.CACHE_SIZE, "0");
+        JdbcAutoPhrasingQParserPlugin plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+
+        String iceCart = plugin.filter("ice cart");
+        for (int i = 0; i < 3; i++) {
+            // Longer and shorter queries alternately, so left overs of former calls would show up.
+            assertEquals(iceCart + " apple juice", plugin.filter("ice cart apple juice"));
+            assertEquals(iceCart, plugin.filter("ice cart"));
+            assertEquals("(" + iceCart + ")", plugin.filter("(ice cart)"));
+        }
+
+        new JdbcTemplate(database).execute("insert into autophrases(autophrases) values('apple juice')");
+        plugin.inform(new ClasspathResourceLoader());
+
+        String appleJuice = plugin.filter("apple juice");
+        assertNotEquals("apple juice", appleJuice);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(iceCart + " " + appleJuice, plugin.filter("ice cart apple juice"));
+            assertEquals(iceCart, plugin.filter("ice cart"));
+        }
+
+        // Other threads use their own buffers.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(iceCart + " " + appleJuice,
+                    executor.submit(() -> plugin.filter("ice cart apple juice")).get(10, TimeUnit.SECONDS));
+            assertEquals(appleJuice, plugin.filter("apple juice"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test for {@link JdbcAutoPhrasingQParserPlugin#createParser(String, SolrParams, SolrParams, SolrQueryRequest)}
+     * with {@link JdbcAutoPhrasingQParserPlugin#REWRITE_ON_COORDINATOR}.
+     */
+    @Test
+    public void createParser_rewriteOnCoordinator() throws Exception {
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select autophrases from autophrases");
+        args.add(JdbcAutoPhrasingQParserPlugin.REWRITE_ON_COORDINATOR, "true");
+        JdbcAutoPhrasingQParserPlugin plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+        String rewritten = plugin.filter("ice cart");
+
+        // Coordinator: Rewrites the query and forwards it to the shards.
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, "ice cart");
+        SolrQueryRequest req = mockRequest(params);
+        req.getContext().put(JdbcAutoPhrasingQParserPlugin.MAIN_QUERY, true);
+        plugin.createParser("ice cart", null, params, req);
+
+        QParserPlugin downstream = req.getCore().getQueryPlugin("any");
+        verify(downstream).createParser(eq(rewritten), any(SolrParams.class), any(SolrParams.class), eq(req));
+        assertNull(req.getContext().get(JdbcAutoPhrasingQParserPlugin.MAIN_QUERY));
+        SolrParams shardParams = (SolrParams) req.getContext().get(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS);
+        assertEquals(rewritten, shardParams.get(CommonParams.Q));
+        assertEquals(true, shardParams.getBool(JdbcAutoPhrasingQParserPlugin.AUTOPHRASED));
+
+        // Shard: Passes the autophrased query unchanged.
+        ModifiableSolrParams shardRequestParams = new ModifiableSolrParams();
+        shardRequestParams.set(CommonParams.Q, "ice cart");
+        shardRequestParams.set(ShardParams.IS_SHARD, true);
+        shardRequestParams.set(JdbcAutoPhrasingQParserPlugin.AUTOPHRASED, true);
+        SolrQueryRequest shardReq = mockRequest(shardRequestParams);
+        shardReq.getContext().put(JdbcAutoPhrasingQParserPlugin.MAIN_QUERY, true);
+        plugin.createParser("ice cart", null, shardRequestParams, shardReq);
+
+        downstream = shardReq.getCore().getQueryPlugin("any");
+        verify(downstream).createParser(eq("ice cart"), any(SolrParams.class), any(SolrParams.class), eq(shardReq));
+        assertNull(shardReq.getContext().get(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS));
+
+        // Shard: Autophrases a filter query equal to the main query, because just the first parser takes the marker.
+        plugin.createParser("ice cart", null, shardRequestParams, shardReq);
+        verify(downstream).createParser(eq(rewritten), any(SolrParams.class), any(SolrParams.class), eq(shardReq));
+
+        // Coordinator without marked main query: Rewrites the query, but does not forward it.
+        SolrQueryRequest unmarkedReq = mockRequest(params);
+        plugin.createParser("ice cart", null, params, unmarkedReq);
+
+        downstream = unmarkedReq.getCore().getQueryPlugin("any");
+        verify(downstream).createParser(eq(rewritten), any(SolrParams.class), any(SolrParams.class), eq(unmarkedReq));
+        assertNull(unmarkedReq.getContext().get(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS));
+
+        // Coordinator with local params: Rewrites the query, but does not forward it without its local params.
+        SolrQueryRequest localParamsReq = mockRequest(params);
+        localParamsReq.getContext().put(JdbcAutoPhrasingQParserPlugin.MAIN_QUERY, true);
+        plugin.createParser("ice cart", new ModifiableSolrParams(), params, localParamsReq);
+
+        downstream = localParamsReq.getCore().getQueryPlugin("any");
+        verify(downstream).createParser(eq(rewritten), any(SolrParams.class), any(SolrParams.class), eq(localParamsReq));
+        assertNull(localParamsReq.getContext().get(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS));
+    }
+
+    /**
+     * Test for {@link JdbcAutoPhrasingQParserPlugin#createParser(String, SolrParams, SolrParams, SolrQueryRequest)}
+     * with {@link JdbcAutoPhrasingQParserPlugin#AUTOPHRASED} for queries other than the main query.
+     */
+    @Test
+    public void createParser_autophrasedFilterQuery() throws Exception {
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select autophrases from autophrases");
+        args.add(JdbcAutoPhrasingQParserPlugin.REWRITE_ON_COORDINATOR, "true");
+        JdbcAutoPhrasingQParserPlugin plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+        String rewritten = plugin.filter("ice cart");
+
+        // Shard: Autophrases filter queries, even if the main query has been autophrased.
+        ModifiableSolrParams shardRequestParams = new ModifiableSolrParams();
+        shardRequestParams.set(CommonParams.Q, rewritten);
+        shardRequestParams.set(CommonParams.FQ, "{!autophrasingParser}ice cart");
+        shardRequestParams.set(ShardParams.IS_SHARD, true);
+        shardRequestParams.set(JdbcAutoPhrasingQParserPlugin.AUTOPHRASED, true);
+        SolrQueryRequest shardReq = mockRequest(shardRequestParams);
+        plugin.createParser("ice cart", null, shardRequestParams, shardReq);
+
+        QParserPlugin downstream = shardReq.getCore().getQueryPlugin("any");
+        verify(downstream).createParser(eq(rewritten), any(SolrParams.class), any(SolrParams.class), eq(shardReq));
+        assertNull(shardReq.getContext().get(ConfiguringHttpShardHandlerFactory.SHARD_PARAMS));
+
+        // No shard request: Ignores the marker sent by a client.
+        ModifiableSolrParams clientParams = new ModifiableSolrParams();
+        clientParams.set(CommonParams.Q, "ice cart");
+        clientParams.set(JdbcAutoPhrasingQParserPlugin.AUTOPHRASED, true);
+        SolrQueryRequest clientReq = mockRequest(clientParams);
+        plugin.createParser("ice cart", null, clientParams, clientReq);
+
+        downstream = clientReq.getCore().getQueryPlugin("any");
+        verify(downstream).createParser(eq(rewritten), any(SolrParams.class), any(SolrParams.class), eq(clientReq));
+    }
+
+    /**
+     * Test for the cache of rewritten queries of {@link JdbcAutoPhrasingQParserPlugin}.
+     */
+    @Test
+    public void createParser_cache() throws Exception {
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select autophrases from autophrases");
+        JdbcAutoPhrasingQParserPlugin plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+
+        // Hits return the same rewrite.
+        String rewritten = parse(plugin, "ice cart");
+        assertNotEquals("ice cart", rewritten);
+        assertSame(rewritten, parse(plugin, "ice cart"));
+        assertEquals("apple juice", parse(plugin, "apple juice"));
+
+        NamedList<?> statistics = plugin.getStatistics();
+        assertEquals(3L, statistics.get("lookups"));
+        assertEquals(1L, statistics.get("hits"));
+        assertEquals(2L, statistics.get("misses"));
+        assertEquals(2L, statistics.get("size"));
+
+        // A reload drops the rewrites of the former phrases and starts the statistics over.
+        new JdbcTemplate(database).execute("insert into autophrases(autophrases) values('apple juice')");
+        plugin.inform(new ClasspathResourceLoader());
+
+        assertNotEquals("apple juice", parse(plugin, "apple juice"));
+        statistics = plugin.getStatistics();
+        assertEquals(1L, statistics.get("lookups"));
+        assertEquals(0L, statistics.get("hits"));
+        assertEquals(1L, statistics.get("size"));
+    }
+
+    /**
+     * Test for {@link JdbcAutoPhrasingQParserPlugin} with disabled cache.
+     */
+    @Test
+    public void createParser_noCache() throws Exception {
+        NamedList<Object> args = new NamedList<>();
+        args.add(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+        args.add(JdbcReaderFactoryParams.SQL, "select autophrases from autophrases");
+        args.add(JdbcAutoPhrasingQParserPlugin.CACHE_SIZE, "0");
+        JdbcAutoPhrasingQParserPlugin plugin = new JdbcAutoPhrasingQParserPlugin();
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader());
+
+        String rewritten = parse(plugin, "ice cart");
+        assertEquals(rewritten, parse(plugin, "ice cart"));
+        assertNotSame(rewritten, parse(plugin, "ice cart"));
+
+        NamedList<?> statistics = plugin.getStatistics();
+        assertEquals(1L, statistics.get("loads"));
+        assertNull(statistics.get("lookups"));
+    }
+
+    /**
+     * Parse a query and return the rewritten query passed to the downstream query parser.
+     */
+    private String parse(JdbcAutoPhrasingQParserPlugin plugin, String query) {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.Q, query);
+        SolrQueryRequest req = mockRequest(params);
+        plugin.createParser(query, null, params, req);
+
+        ArgumentCaptor<String> rewritten = ArgumentCaptor.forClass(String.class);
+        verify(req.getCore().getQueryPlugin("any"))
+                .createParser(rewritten.capture(), any(SolrParams.class), any(SolrParams.class), eq(req));
+        return rewritten.getValue();
+    }
+
+    /**
+     * Mock request with a downstream query parser.
+     */
+    private SolrQueryRequest mockRequest(SolrParams params) {
+        QParserPlugin downstream = mock(QParserPlugin.class);
+        SolrCore core = mock(SolrCore.class);
+        when(core.getQueryPlugin(anyString())).thenReturn(downstream);
+        Map<Object, Object> context = new HashMap<>();
+        SolrQueryRequest req = mock(SolrQueryRequest.class);
+        when(req.getParams()).thenReturn(params);
+        when(req.getContext()).thenReturn(context);
+        when(req.getCore()).thenReturn(core);
+        return req;
+    }
+
+    @After
+    public void tearDownDatabase() throws Exception {
+        database.shutdown();
+    }
+}
@@ -0,0 +1,177 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Test for {@link JdbcDictionaryCache}.
+ */
+public class JdbcDictionaryCacheTest {
+   @Before
+   @After
+   public void cleanUp() {
+      JdbcDictionaryCache.clear();
+   }
+
+   /**
+    * Test for {@link JdbcDictionaryCache#get(Object, String, JdbcDictionaryCache.Compilation)}.
+    */
+   @Test
+   public void get_fingerprint() throws Exception {
+      Object dictionary = JdbcDictionaryCache.get("key", "1", Object::new);
+
+      // Same fingerprint: Reuse.
+      assertSame(dictionary, JdbcDictionaryCache.get("key", "1", Object::new));
+      // Other fingerprint or other key: Compile.
+      assertNotSame(dictionary, JdbcDictionaryCache.get("key", "2", Object::new));
+      assertNotSame(dictionary, JdbcDictionaryCache.get("other", "1", Object::new));
+   }
+
+   /**
+    * Test for {@link JdbcDictionaryCache#get(Object, String, JdbcDictionaryCache.Compilation)}.
+    */
+   @Test
+   public void get_noFingerprint() throws Exception {
+      Object dictionary = JdbcDictionaryCache.get("key", null, Object::new);
+
+      // Unknown fingerprint: Always compile.
+      assertNotSame(dictionary, JdbcDictionaryCache.get("key", null, Object::new));
+   }
+
+   /**
+    * Test for {@link JdbcDictionaryCache#get(Object, String, JdbcDictionaryCache.Compilation)}.
+    */
+   @Test
+   public void get_concurrentSameFingerprint() throws Exception {
+      CountDownLatch compiling = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger compilations = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         Future<Object> first = executor.submit(() -> JdbcDictionaryCache.get("key", "1", () -> {
+            compilations.incrementAndGet();
+            compiling.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+            return new Object();
+         }));
+         compiling.await();
+
+         // Same fingerprint: Join the running compilation.
+         Future<Object> second = executor.submit(() -> JdbcDictionaryCache.get("key", "1", () -> {
+            compilations.incrementAndGet();
+            return new Object();
+         }));
+         release.countDown();
+
+         assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+         assertEquals(1, compilations.get());
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Test for {@link JdbcDictionaryCache#get(Object, String, JdbcDictionaryCache.Compilation)}.
+    */
+   @Test
+   public void get_concurrentNoFingerprint() throws Exception {
+      CountDownLatch compiling = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger compilations = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+         Future<Object> first = executor.submit(() -> JdbcDictionaryCache.get("key", null, () -> {
+            compilations.incrementAndGet();
+            compiling.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+            return new Object();
+         }));
+         compiling.await();
+
+         // No fingerprint: Join the running compilation of the same key.
+         AtomicReference<Thread> joining = new AtomicReference<>();
+         Future<Object> second = executor.submit(() -> {
+            joining.set(Thread.currentThread());
+            return JdbcDictionaryCache.get("key", null, () -> {
+               compilations.incrementAndGet();
+               return new Object();
+            });
+         });
+         awaitWaiting(joining);
+         // Other key: Compile on its own.
+         Object other = new Object();
+         assertSame(other, executor.submit(() -> JdbcDictionaryCache.get("other", null, () -> other))
+               .get(10, TimeUnit.SECONDS));
+         release.countDown();
+
+         Object dictionary = first.get(10, TimeUnit.SECONDS);
+         assertSame(dictionary, second.get(10, TimeUnit.SECONDS));
+         assertEquals(1, compilations.get());
+
+         // Not reused after the compilation has finished.
+         assertNotSame(dictionary, JdbcDictionaryCache.get("key", null, Object::new));
+      } finally {
+         release.countDown();
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Test for {@link JdbcDictionaryCache#get(Object, String, JdbcDictionaryCache.Compilation)}.
+    */
+   @Test
+   public void get_concurrentOtherFingerprint() throws Exception {
+      CountDownLatch compiling = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         Object stale = new Object();
+         Future<Object> first = executor.submit(() -> JdbcDictionaryCache.get("key", "1", () -> {
+            compiling.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+            return stale;
+         }));
+         compiling.await();
+
+         // Newer fingerprint: Do not join the running compilation of stale data, but compile on its own.
+         Object fresh = new Object();
+         Future<Object> other = executor.submit(() -> JdbcDictionaryCache.get("key", "2", () -> fresh));
+         assertSame(fresh, other.get(10, TimeUnit.SECONDS));
+         // No fingerprint: Do not join a compilation with a fingerprint either.
+         Object unknown = new Object();
+         Future<Object> none = executor.submit(() -> JdbcDictionaryCache.get("key", null, () -> unknown));
+         assertSame(unknown, none.get(10, TimeUnit.SECONDS));
+
+         release.countDown();
+         assertSame(stale, first.get(10, TimeUnit.SECONDS));
+         assertSame(fresh, JdbcDictionaryCache.get("key", "2", Object::new));
+      } finally {
+         release.countDown();
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Wait until a thread is waiting, e.g. for a running compilation.
+    */
+   private static void awaitWaiting(AtomicReference<Thread> thread) throws InterruptedException {
+      for (int i = 0; i < 1000 && (thread.get() == null || thread.get().getState() != Thread.State.WAITING); i++) {
+         Thread.sleep(10);
+      }
+   }
+}
@@ -0,0 +1,107 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test for {@link JdbcDictionary}.
+ */
+public class JdbcDictionaryTest {
+   /**
+    * Embedded database.
+    */
+   private EmbeddedDatabase database;
+
+   @Before
+   public void setUp() throws Exception {
+      // Create H2 database instance
+      database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+
+      // Add stop word table with some content
+      JdbcTemplate template = new JdbcTemplate(database);
+      template.execute("create table stopwords(stopword varchar(256))");
+      template.execute("insert into stopwords(stopword) values('a')");
+   }
+
+   /**
+    * Test for periodic refreshes of {@link JdbcDictionary}.
+    */
+   @Test
+   public void refreshPeriodically() throws Exception {
+      SimpleJdbcReader reader = new SimpleJdbcReader(database, "select stopword from stopwords order by stopword", false);
+      reader.refreshPeriodically(50, 10);
+      JdbcDictionary<String> dictionary = new JdbcDictionary<>("stop words", reader, (loader, r) -> read(r), null);
+      dictionary.load(new ClasspathResourceLoader());
+      assertEquals("a", dictionary.get());
+
+      new JdbcTemplate(database).execute("insert into stopwords(stopword) values('b')");
+      for (int i = 0; i < 100 && !"a\nb".equals(dictionary.get()); i++) {
+         Thread.sleep(50);
+      }
+      assertEquals("a\nb", dictionary.get());
+   }
+
+   /**
+    * Test for the load statistics of {@link JdbcDictionary#reload(ResourceLoader)}.
+    */
+   @Test
+   public void reload_statistics() throws Exception {
+      SimpleJdbcReader reader = new SimpleJdbcReader(database, "select stopword from stopwords order by stopword", false);
+      JdbcDictionary<String> dictionary = new JdbcDictionary<>("stop words", reader, JdbcDictionaryTest::read, null);
+      dictionary.load(new ClasspathResourceLoader());
+      assertEquals("a", dictionary.get());
+      assertEquals(1L, reader.getLoadStatistics().toNamedList().get("lastBytes"));
+
+      new JdbcTemplate(database).execute("insert into stopwords(stopword) values('b')");
+      dictionary.reload(new ClasspathResourceLoader());
+      assertEquals("a\nb", dictionary.get());
+      assertEquals(2L, reader.getLoadStatistics().toNamedList().get("loads"));
+      assertEquals(2L, reader.getLoadStatistics().toNamedList().get("lastRows"));
+      assertEquals(3L, reader.getLoadStatistics().toNamedList().get("lastBytes"));
+   }
+
+   /**
+    * Read all data of a reader via a {@link JdbcResourceLoader}, like the filter factories.
+    */
+   private static String read(ResourceLoader loader, JdbcReader reader) {
+      try (InputStream data = new JdbcResourceLoader(loader, reader, StandardCharsets.UTF_8)
+            .openResource(JdbcResourceLoader.DATABASE)) {
+         return IOUtils.toString(data, StandardCharsets.UTF_8);
+      } catch (Exception e) {
+         throw new IllegalArgumentException(e);
+      }
+   }
+
+   /**
+    * Read all data of a reader.
+    */
+   private static String read(JdbcReader reader) {
+      try (Reader data = reader.getReader()) {
+         StringWriter result = new StringWriter();
+         IOUtils.copy(data, result);
+         return result.toString();
+      } catch (Exception e) {
+         throw new IllegalArgumentException(e);
+      }
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      database.shutdown();
+   }
+}
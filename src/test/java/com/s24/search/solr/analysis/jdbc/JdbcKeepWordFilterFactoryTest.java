@@ -0,0 +1,147 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestRuleLimitSysouts.Limit;
+import org.apache.lucene.util.Version;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.jndi.SimpleNamingContextBuilder;
+
+/**
+ * Test for {@link JdbcKeepWordFilterFactory}.
+ */
+@Limit(bytes = 16384)
+public class JdbcKeepWordFilterFactoryTest extends LuceneTestCase {
+   /**
+    * Embedded database. Implements {@link DataSource}.
+    */
+   private EmbeddedDatabase database;
+
+   @Before
+   public void setUpDatabase() throws Exception {
+      BasicConfigurator.resetConfiguration();
+      BasicConfigurator.configure();
+
+      // Create H2 database instance
+      database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+
+      // Add keep word table with some content
+      JdbcTemplate template = new JdbcTemplate(database);
+      template.execute("create table keepwords(keepword varchar(255))");
+      template.execute("insert into keepwords values ('somestring')");
+      template.execute("insert into keepwords values ('anotherstring')");
+
+      // Register data source with JNDI
+      SimpleNamingContextBuilder builder = SimpleNamingContextBuilder.emptyActivatedContextBuilder();
+      builder.bind("java:comp/env/dataSource", database);
+   }
+
+   /**
+    * Test for {@link JdbcKeepWordFilterFactory#create(TokenStream)}.
+    */
+   @Test
+   public void create() throws Exception {
+      // White space tokenizer, to lower case tokenizer.
+      MockTokenizer tokenizer = new MockTokenizer();
+      tokenizer.setReader(new StringReader("test1 somestring test2 anotherstring"));
+
+      JdbcKeepWordFilterFactory factory = new JdbcKeepWordFilterFactory(args());
+      factory.inform(new ClasspathResourceLoader());
+
+      try (TokenStream stream = factory.create(tokenizer)) {
+         CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+         stream.reset();
+         assertTrue(stream.incrementToken());
+         assertEquals("somestring", attribute.toString());
+         assertTrue(stream.incrementToken());
+         assertEquals("anotherstring", attribute.toString());
+         assertFalse(stream.incrementToken());
+         stream.end();
+      }
+   }
+
+   /**
+    * Test for {@link JdbcKeepWordFilterFactory#inform(SolrIndexSearcher)}.
+    */
+   @Test
+   public void inform_searcher() throws Exception {
+      JdbcKeepWordFilterFactory factory = new JdbcKeepWordFilterFactory(args());
+      factory.inform(new ClasspathResourceLoader());
+      CharArraySet keepWords = factory.getWords();
+      assertEquals(2, keepWords.size());
+
+      new JdbcTemplate(database).execute("insert into keepwords values ('test2')");
+      factory.inform(searcher());
+
+      // The former version is unchanged.
+      assertEquals(2, keepWords.size());
+      assertEquals(3, factory.getWords().size());
+      assertTrue(factory.getWords().contains("test2"));
+      assertEquals(2L, factory.getStatistics().get("loads"));
+
+      // White space tokenizer, to lower case tokenizer.
+      MockTokenizer tokenizer = new MockTokenizer();
+      tokenizer.setReader(new StringReader("test1 somestring test2"));
+      try (TokenStream stream = factory.create(tokenizer)) {
+         CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+         stream.reset();
+         assertTrue(stream.incrementToken());
+         assertEquals("somestring", attribute.toString());
+         assertTrue(stream.incrementToken());
+         assertEquals("test2", attribute.toString());
+         assertFalse(stream.incrementToken());
+         stream.end();
+      }
+   }
+
+   /**
+    * Configuration of the factory.
+    */
+   private static Map<String, String> args() {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select keepword from keepwords");
+      return args;
+   }
+
+   /**
+    * Mock of a new searcher of a core.
+    */
+   private static SolrIndexSearcher searcher() {
+      SolrCore core = mock(SolrCore.class);
+      when(core.getResourceLoader()).thenReturn(mock(SolrResourceLoader.class));
+      SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+      when(searcher.getCore()).thenReturn(core);
+      return searcher;
+   }
+
+   @After
+   public void tearDownDatabase() throws Exception {
+      database.shutdown();
+   }
+}
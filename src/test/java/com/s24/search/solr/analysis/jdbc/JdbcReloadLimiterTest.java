@@ -0,0 +1,53 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link JdbcReloadLimiter}.
+ */
+public class JdbcReloadLimiterTest {
+   @Before
+   @After
+   public void cleanUp() {
+      JdbcReloadLimiter.clear();
+   }
+
+   /**
+    * Test for {@link JdbcReloadLimiter#tryAcquire()} with a minimum interval.
+    */
+   @Test
+   public void tryAcquire_minInterval() {
+      JdbcReloadLimiter limiter = new JdbcReloadLimiter(mock(DataSource.class), 60000, 0);
+
+      assertEquals(0, limiter.tryAcquire());
+      long wait = limiter.tryAcquire();
+      assertTrue(wait > 0 && wait <= 60000);
+   }
+
+   /**
+    * Test for {@link JdbcReloadLimiter#tryAcquire()} with a limit per data source.
+    */
+   @Test
+   public void tryAcquire_perDataSource() {
+      DataSource dataSource = mock(DataSource.class);
+      JdbcReloadLimiter limiter1 = new JdbcReloadLimiter(dataSource, 0, 2);
+      // The lowest limit wins.
+      JdbcReloadLimiter limiter2 = new JdbcReloadLimiter(dataSource, 0, 1);
+      JdbcReloadLimiter other = new JdbcReloadLimiter(mock(DataSource.class), 0, 1);
+
+      assertEquals(0, limiter1.tryAcquire());
+      long wait = limiter2.tryAcquire();
+      assertTrue(wait > 0 && wait <= 60000);
+
+      // Other data sources are not affected.
+      assertEquals(0, other.tryAcquire());
+   }
+}
@@ -1,5 +1,8 @@
 package com.s24.search.solr.analysis.jdbc;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
@@ -11,10 +14,15 @@ import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
+import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.ClasspathResourceLoader;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestRuleLimitSysouts.Limit;
 import org.apache.lucene.util.Version;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -25,7 +33,7 @@ import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
 import org.springframework.mock.jndi.SimpleNamingContextBuilder;
 
 /**
- * Test for {@link JdbcSynonymFilterFactory}.
+ * Test for {@link JdbcStopFilterFactory}.
  */
 @Limit(bytes = 16384)
 public class JdbcStopFilterFactoryTest extends LuceneTestCase {
@@ -82,6 +90,103 @@ public class JdbcStopFilterFactoryTest extends LuceneTestCase {
       }
    }
 
+   /**
+    * Test for reloading the stop words of {@link JdbcStopFilterFactory}.
+    */
+   @Test
+   public void reload() throws Exception {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select stopword from stopwords");
+
+      JdbcStopFilterFactory factory = new JdbcStopFilterFactory(args);
+      factory.inform(new ClasspathResourceLoader());
+      CharArraySet stopWords = factory.getStopWords();
+      assertEquals(2, stopWords.size());
+
+      new JdbcTemplate(database).execute("insert into stopwords values ('test2')");
+      factory.inform(new ClasspathResourceLoader());
+
+      // The former version is unchanged.
+      assertEquals(2, stopWords.size());
+      assertEquals(3, factory.getStopWords().size());
+      assertTrue(factory.getStopWords().contains("test2"));
+   }
+
+   /**
+    * Test for {@link JdbcStopFilterFactory#inform(SolrIndexSearcher)}.
+    */
+   @Test
+   public void inform_searcher() throws Exception {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select stopword from stopwords");
+
+      JdbcStopFilterFactory factory = new JdbcStopFilterFactory(args);
+      factory.inform(new ClasspathResourceLoader());
+      CharArraySet stopWords = factory.getStopWords();
+      assertEquals(2, stopWords.size());
+
+      new JdbcTemplate(database).execute("insert into stopwords values ('test2')");
+      factory.inform(searcher());
+
+      // The former version is unchanged.
+      assertEquals(2, stopWords.size());
+      assertEquals(3, factory.getStopWords().size());
+      assertTrue(factory.getStopWords().contains("test2"));
+      assertEquals(2L, factory.getStatistics().get("loads"));
+
+      // White space tokenizer, to lower case tokenizer.
+      MockTokenizer tokenizer = new MockTokenizer();
+      tokenizer.setReader(new StringReader("test1 somestring test2"));
+      try (TokenStream stream = factory.create(tokenizer)) {
+         CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+         stream.reset();
+         assertTrue(stream.incrementToken());
+         assertEquals("test1", attribute.toString());
+         assertFalse(stream.incrementToken());
+         stream.end();
+      }
+   }
+
+   /**
+    * Test for {@link JdbcStopFilterFactory#getStatistics()}.
+    */
+   @Test
+   public void getStatistics() throws Exception {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select stopword from stopwords");
+
+      JdbcStopFilterFactory factory = new JdbcStopFilterFactory(args);
+      assertEquals(0L, factory.getStatistics().get("loads"));
+      assertEquals(-1L, factory.getStatistics().get("millisSinceLastSuccess"));
+
+      factory.inform(new ClasspathResourceLoader());
+
+      NamedList<?> statistics = factory.getStatistics();
+      assertEquals(1L, statistics.get("loads"));
+      assertEquals(0L, statistics.get("failures"));
+      assertEquals(2L, statistics.get("lastRows"));
+      assertEquals(24L, statistics.get("lastBytes"));
+      assertTrue((Long) statistics.get("ramBytes") > 0);
+      assertTrue((Long) statistics.get("millisSinceLastSuccess") >= 0);
+   }
+
+   /**
+    * Mock of a new searcher of a core.
+    */
+   private static SolrIndexSearcher searcher() {
+      SolrCore core = mock(SolrCore.class);
+      when(core.getResourceLoader()).thenReturn(mock(SolrResourceLoader.class));
+      SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+      when(searcher.getCore()).thenReturn(core);
+      return searcher;
+   }
+
    @After
    public void tearDownDatabase() throws Exception {
       database.shutdown();
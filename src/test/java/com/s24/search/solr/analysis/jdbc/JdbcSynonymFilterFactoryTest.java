@@ -15,6 +15,7 @@ import org.apache.lucene.analysis.util.ClasspathResourceLoader;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestRuleLimitSysouts.Limit;
 import org.apache.lucene.util.Version;
+import org.apache.solr.common.util.NamedList;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,6 +48,11 @@ public class JdbcSynonymFilterFactoryTest extends LuceneTestCase {
       template.execute("create table synonyms(synonyms varchar(256))");
       template.execute("insert into synonyms(synonyms) values('test1=>testA,testB')");
       template.execute("insert into synonyms(synonyms) values('test2=>testC,testD')");
+      template.execute("create table synonym_columns(input varchar(256), output varchar(256))");
+      template.execute("insert into synonym_columns(input, output) values('test1', 'testA')");
+      template.execute("insert into synonym_columns(input, output) values('test1', 'testB')");
+      template.execute("insert into synonym_columns(input, output) values('test2', 'testC')");
+      template.execute("insert into synonym_columns(input, output) values('test2', 'testD')");
 
       // Register data source with JNDI
       SimpleNamingContextBuilder builder = SimpleNamingContextBuilder.emptyActivatedContextBuilder();
@@ -86,6 +92,87 @@ public class JdbcSynonymFilterFactoryTest extends LuceneTestCase {
       }
    }
 
+   /**
+    * Test for {@link JdbcSynonymFilterFactory#create(TokenStream)} with structured synonyms.
+    */
+   @Test
+   public void create_structured() throws Exception {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select input, output from synonym_columns");
+      args.put(JdbcReaderFactoryParams.STRUCTURED, "true");
+
+      // White space tokenizer, to lower case tokenizer.
+      MockTokenizer tokenizer = new MockTokenizer();
+      tokenizer.setReader(new StringReader("test1 test2"));
+
+      JdbcSynonymFilterFactory factory = new JdbcSynonymFilterFactory(args);
+      factory.inform(new ClasspathResourceLoader());
+
+      try (TokenStream stream = factory.create(tokenizer)) {
+         CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+         stream.reset();
+         assertTrue(stream.incrementToken());
+         assertEquals("testA", attribute.toString());
+         assertTrue(stream.incrementToken());
+         assertEquals("testB", attribute.toString());
+         assertTrue(stream.incrementToken());
+         assertEquals("testC", attribute.toString());
+         assertTrue(stream.incrementToken());
+         assertEquals("testD", attribute.toString());
+         assertFalse(stream.incrementToken());
+         stream.end();
+      }
+   }
+
+   /**
+    * Test for {@link JdbcSynonymFilterFactory#getStatistics()}.
+    */
+   @Test
+   public void getStatistics() throws Exception {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select synonyms from synonyms");
+
+      JdbcSynonymFilterFactory factory = new JdbcSynonymFilterFactory(args);
+      assertEquals(0L, factory.getStatistics().get("loads"));
+      assertEquals(-1L, factory.getStatistics().get("millisSinceLastSuccess"));
+
+      factory.inform(new ClasspathResourceLoader());
+
+      NamedList<?> statistics = factory.getStatistics();
+      assertEquals(1L, statistics.get("loads"));
+      assertEquals(0L, statistics.get("failures"));
+      assertEquals(2L, statistics.get("lastRows"));
+      assertEquals(37L, statistics.get("lastBytes"));
+      assertTrue((Long) statistics.get("ramBytes") > 0);
+      assertTrue((Long) statistics.get("millisSinceLastSuccess") >= 0);
+   }
+
+   /**
+    * Test for {@link JdbcSynonymFilterFactory#getStatistics()} with structured synonyms.
+    */
+   @Test
+   public void getStatistics_structured() throws Exception {
+      Map<String, String> args = new HashMap<>();
+      args.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM, Version.LUCENE_5_0_0.toString());
+      args.put(JdbcReaderFactoryParams.DATASOURCE, "java:comp/env/dataSource");
+      args.put(JdbcReaderFactoryParams.SQL, "select input, output from synonym_columns");
+      args.put(JdbcReaderFactoryParams.STRUCTURED, "true");
+
+      JdbcSynonymFilterFactory factory = new JdbcSynonymFilterFactory(args);
+      factory.inform(new ClasspathResourceLoader());
+
+      NamedList<?> statistics = factory.getStatistics();
+      assertEquals(1L, statistics.get("loads"));
+      assertEquals(0L, statistics.get("failures"));
+      assertEquals(4L, statistics.get("lastRows"));
+      assertEquals(47L, statistics.get("lastBytes"));
+      assertTrue((Long) statistics.get("ramBytes") > 0);
+   }
+
    @After
    public void tearDownDatabase() throws Exception {
       database.shutdown();
@@ -0,0 +1,108 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test for {@link PartitionedJdbcReader}.
+ */
+public class PartitionedJdbcReaderTest {
+   /**
+    * Embedded database.
+    */
+   private EmbeddedDatabase database;
+
+   @Before
+   public void setUp() throws Exception {
+      // Create H2 database instance
+      database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+
+      // Add synonym table with some content
+      JdbcTemplate template = new JdbcTemplate(database);
+      template.execute("create table synonyms(id int, synonyms varchar(256))");
+      template.execute("insert into synonyms(id, synonyms) values(1, 'test1=>testA,testB')");
+      template.execute("insert into synonyms(id, synonyms) values(2, 'test2=>testC,testD')");
+      template.execute("insert into synonyms(id, synonyms) values(3, 'test3=>testE')");
+   }
+
+   /**
+    * Test for {@link PartitionedJdbcReader#getReader()}.
+    */
+   @Test
+   public void getReader() throws Exception {
+      PartitionedJdbcReader reader = new PartitionedJdbcReader(database,
+            "select synonyms from synonyms where mod(id, {partitions}) = {partition} order by id", false, 0, null, 2);
+
+      // Partitions are merged in the order of their index.
+      try (Reader data = reader.getReader()) {
+         StringWriter synonyms = new StringWriter();
+         IOUtils.copy(data, synonyms);
+
+         assertEquals("test2=>testC,testD\ntest1=>testA,testB\ntest3=>testE", synonyms.toString());
+      }
+   }
+
+   /**
+    * Test for {@link PartitionedJdbcReader#getReader()}: Empty partitions add no empty lines
+    * and more partitions than are opened at once.
+    */
+   @Test
+   public void getReader_emptyPartitions() throws Exception {
+      int partitions = PartitionedJdbcReader.OPEN_PARTITIONS * 2 + 1;
+      PartitionedJdbcReader reader = new PartitionedJdbcReader(database,
+            "select synonyms from synonyms where id = {partition} order by id", false, 1, null, partitions);
+
+      try (Reader data = reader.getReader()) {
+         StringWriter synonyms = new StringWriter();
+         IOUtils.copy(data, synonyms);
+
+         assertEquals("test1=>testA,testB\ntest2=>testC,testD\ntest3=>testE", synonyms.toString());
+      }
+   }
+
+   /**
+    * Test for {@link PartitionedJdbcReader#getReader()}: Closing the reader early releases all connections.
+    */
+   @Test
+   public void getReader_close() throws Exception {
+      PooledDataSource dataSource = new PooledDataSource();
+      dataSource.setUrl("jdbc:h2:mem:partitions;DB_CLOSE_DELAY=-1");
+      dataSource.setMaxSize(PartitionedJdbcReader.OPEN_PARTITIONS);
+      dataSource.setMaxWait(1000);
+      try {
+         PartitionedJdbcReader reader = new PartitionedJdbcReader(dataSource,
+               "select 'x' from dual where {partition} >= 0", false, 0, null, 10);
+         for (int i = 0; i < 3; i++) {
+            try (Reader data = reader.getReader()) {
+               assertEquals('x', data.read());
+            }
+         }
+      } finally {
+         dataSource.close();
+      }
+   }
+
+   /**
+    * Test for {@link PartitionedJdbcReader#PartitionedJdbcReader(javax.sql.DataSource, String, boolean, int, String, int)}.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void missingPlaceholder() {
+      new PartitionedJdbcReader(database, "select synonyms from synonyms", false, 0, null, 2);
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      database.shutdown();
+   }
+}
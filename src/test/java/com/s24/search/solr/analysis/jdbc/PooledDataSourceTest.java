@@ -0,0 +1,161 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.h2.jdbc.JdbcConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link PooledDataSource}.
+ */
+public class PooledDataSourceTest {
+   /**
+    * Data source under test.
+    */
+   private PooledDataSource dataSource;
+
+   @Before
+   public void setUp() {
+      dataSource = new PooledDataSource();
+      dataSource.setUrl("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1");
+      dataSource.setMaxSize(2);
+      dataSource.setMaxWait(100);
+   }
+
+   @After
+   public void tearDown() {
+      dataSource.close();
+   }
+
+   /**
+    * Test for {@link PooledDataSource#getConnection()}.
+    */
+   @Test
+   public void getConnection() throws Exception {
+      Connection connection1 = dataSource.getConnection();
+      Connection connection2 = dataSource.getConnection();
+      assertEquals(2, dataSource.getOpenConnections());
+
+      // Pool exhausted.
+      try {
+         dataSource.getConnection();
+         fail("SQLException expected");
+      } catch (SQLException e) {
+         // expected
+      }
+
+      // Closed connections are reused.
+      connection1.close();
+      assertTrue(connection1.isClosed());
+      try (Connection connection3 = dataSource.getConnection()) {
+         assertFalse(connection3.isClosed());
+         assertEquals(2, dataSource.getOpenConnections());
+      }
+      connection2.close();
+      assertEquals(2, dataSource.getOpenConnections());
+   }
+
+   /**
+    * Test for {@link PooledDataSource#getConnection()}: Invalid idle connections are replaced.
+    */
+   @Test
+   public void getConnection_invalid() throws Exception {
+      Connection connection1 = dataSource.getConnection();
+      Connection physical = connection1.unwrap(JdbcConnection.class);
+      connection1.close();
+      // E.g. closed by the database.
+      physical.close();
+      assertEquals(1, dataSource.getOpenConnections());
+
+      try (Connection connection2 = dataSource.getConnection()) {
+         assertTrue(connection2.createStatement().execute("select 1"));
+         assertEquals(1, dataSource.getOpenConnections());
+      }
+   }
+
+   /**
+    * Test for {@link PooledDataSource#close()}: Connections returned after closing the pool are closed.
+    */
+   @Test
+   public void close() throws Exception {
+      Connection connection1 = dataSource.getConnection();
+      Connection connection2 = dataSource.getConnection();
+      Connection physical = connection2.unwrap(JdbcConnection.class);
+      connection1.close();
+      assertEquals(2, dataSource.getOpenConnections());
+
+      dataSource.close();
+      assertEquals(1, dataSource.getOpenConnections());
+      connection2.close();
+      assertTrue(physical.isClosed());
+      assertEquals(0, dataSource.getOpenConnections());
+
+      try {
+         dataSource.getConnection();
+         fail("SQLException expected");
+      } catch (SQLException e) {
+         // expected
+      }
+
+      // Validations after closing don't open connections.
+      dataSource.validate();
+      assertEquals(0, dataSource.getOpenConnections());
+   }
+
+   /**
+    * Test for {@link PooledDataSource#validate()}: Eviction of idle connections.
+    */
+   @Test
+   public void validate_evict() throws Exception {
+      dataSource.setMinSize(1);
+      dataSource.setIdleTimeout(0);
+      Connection connection1 = dataSource.getConnection();
+      Connection connection2 = dataSource.getConnection();
+      connection1.close();
+      connection2.close();
+      assertEquals(2, dataSource.getOpenConnections());
+
+      Thread.sleep(10);
+      dataSource.validate();
+      assertEquals(1, dataSource.getOpenConnections());
+   }
+
+   /**
+    * Test for {@link PooledDataSource#isHealthy()}.
+    */
+   @Test
+   public void isHealthy() {
+      assertTrue(dataSource.isHealthy());
+
+      PooledDataSource missing = new PooledDataSource();
+      missing.setUrl("jdbc:h2:tcp://localhost:1/missing");
+      try {
+         assertFalse(missing.isHealthy());
+      } finally {
+         missing.close();
+      }
+   }
+
+   /**
+    * Test for {@link SimpleJdbcReader#checkDatasource()} with a {@link PooledDataSource}.
+    */
+   @Test
+   public void checkDatasource() {
+      PooledDataSource missing = new PooledDataSource();
+      missing.setUrl("jdbc:h2:tcp://localhost:1/missing");
+      try {
+         assertEquals(null, new SimpleJdbcReader(missing, "select 1", true).getIdentity());
+         assertTrue(new SimpleJdbcReader(dataSource, "select 1", true).getIdentity() != null);
+      } finally {
+         missing.close();
+      }
+   }
+}
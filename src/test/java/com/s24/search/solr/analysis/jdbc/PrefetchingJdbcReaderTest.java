@@ -0,0 +1,112 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test for {@link PrefetchingJdbcReader}.
+ */
+public class PrefetchingJdbcReaderTest {
+   /**
+    * Embedded database.
+    */
+   private EmbeddedDatabase database;
+
+   @Before
+   public void setUp() throws Exception {
+      // Create H2 database instance
+      database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+
+      // Add synonym table with some content
+      JdbcTemplate template = new JdbcTemplate(database);
+      template.execute("create table synonyms(synonyms varchar(256))");
+      template.execute("insert into synonyms(synonyms) values('test1=>testA,testB')");
+      template.execute("insert into synonyms(synonyms) values('test2=>testC,testD')");
+   }
+
+   /**
+    * Test for {@link PrefetchingJdbcReader#getReader()}.
+    */
+   @Test
+   public void getReader() throws Exception {
+      SimpleJdbcReader simpleReader = new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0);
+      PrefetchingJdbcReader reader = new PrefetchingJdbcReader(simpleReader);
+
+      // The first read consumes the prefetched data.
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD", read(reader));
+
+      // Later reads load the data again.
+      new JdbcTemplate(database).execute("insert into synonyms(synonyms) values('test3=>testE')");
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD\ntest3=>testE", read(reader));
+   }
+
+   /**
+    * Test for {@link PrefetchingJdbcReader#getFingerprint()}.
+    */
+   @Test
+   public void getFingerprint() throws Exception {
+      SimpleJdbcReader simpleReader = new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0,
+            "select count(*) from synonyms");
+      PrefetchingJdbcReader reader = new PrefetchingJdbcReader(simpleReader);
+
+      // The fingerprint belongs to the prefetched data, until it has been consumed.
+      assertEquals("2|", reader.getFingerprint());
+      new JdbcTemplate(database).execute("insert into synonyms(synonyms) values('test3=>testE')");
+      assertEquals("2|", reader.getFingerprint());
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD", read(reader));
+
+      assertEquals("3|", reader.getFingerprint());
+   }
+
+   /**
+    * Test for {@link PrefetchingJdbcReader#loaded()}.
+    */
+   @Test
+   public void loaded() throws Exception {
+      SimpleJdbcReader simpleReader = new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0);
+      PrefetchingJdbcReader reader = new PrefetchingJdbcReader(simpleReader);
+
+      // The unused prefetched data is released after the first load.
+      reader.loaded();
+      new JdbcTemplate(database).execute("insert into synonyms(synonyms) values('test3=>testE')");
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD\ntest3=>testE", read(reader));
+   }
+
+   /**
+    * Test for {@link PrefetchingJdbcReader#getReader()} without data source.
+    */
+   @Test
+   public void getReader_missingDataSource() throws Exception {
+      PrefetchingJdbcReader reader = new PrefetchingJdbcReader(
+            new SimpleJdbcReader(null, "select synonyms from synonyms", true, 0));
+
+      assertEquals("", read(reader));
+   }
+
+   /**
+    * Read all data of a reader.
+    */
+   private String read(JdbcReader reader) throws Exception {
+      try (Reader data = reader.getReader()) {
+         StringWriter result = new StringWriter();
+         IOUtils.copy(data, result);
+         return result.toString();
+      }
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      database.shutdown();
+   }
+}
@@ -1,7 +1,12 @@
 package com.s24.search.solr.analysis.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringWriter;
 
@@ -55,6 +60,67 @@ public class SimpleJdbcReaderTest {
       assertEquals("test1=>testA,testB\ntest2=>testC,testD", synonyms.toString());
    }
 
+   /**
+    * Test for {@link SimpleJdbcReader#getReader()} with streaming.
+    */
+   @Test
+   public void getReader_streaming() throws Exception {
+      try (Reader reader = new SimpleJdbcReader(database, "select synonyms from synonyms", false, 1).getReader()) {
+         StringWriter synonyms = new StringWriter();
+         IOUtils.copy(reader, synonyms);
+
+         assertEquals("test1=>testA,testB\ntest2=>testC,testD", synonyms.toString());
+      }
+   }
+
+   /**
+    * Test for {@link SimpleJdbcReader#getReader()} with keyset pagination.
+    */
+   @Test
+   public void getReader_keyset() throws Exception {
+      new JdbcTemplate(database).execute("insert into synonyms(synonyms) values('test3=>testE')");
+      for (int pageSize = 1; pageSize <= 4; pageSize++) {
+         try (Reader reader = new SimpleJdbcReader(database, "select synonyms, synonyms as id from synonyms;", false, 0,
+               null, "id", pageSize).getReader()) {
+            StringWriter synonyms = new StringWriter();
+            IOUtils.copy(reader, synonyms);
+
+            assertEquals("test1=>testA,testB\ntest2=>testC,testD\ntest3=>testE", synonyms.toString());
+         }
+      }
+   }
+
+   /**
+    * Test for {@link SimpleJdbcReader#getReader()} with keyset pagination and a null key.
+    */
+   @Test
+   public void getReader_keyset_nullKey() throws Exception {
+      String sql = "select synonyms, case when synonyms like 'test2%' then null else synonyms end as id from synonyms";
+      try (Reader reader = new SimpleJdbcReader(database, sql, false, 0, null, "id", 10).getReader()) {
+         IOUtils.copy(reader, new StringWriter());
+         fail("Null keys must be rejected.");
+      } catch (IOException e) {
+         assertTrue(e.getMessage().contains("The key column id"));
+      }
+   }
+
+   /**
+    * Test for {@link SimpleJdbcReader#getFingerprint()}.
+    */
+   @Test
+   public void getFingerprint() throws Exception {
+      SimpleJdbcReader reader = new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0,
+            "select count(*) from synonyms");
+      String fingerprint = reader.getFingerprint();
+      assertEquals(fingerprint, reader.getFingerprint());
+
+      new JdbcTemplate(database).execute("insert into synonyms(synonyms) values('test3=>testE')");
+      assertNotEquals(fingerprint, reader.getFingerprint());
+
+      // No fingerprint without fingerprint SQL.
+      assertNull(new SimpleJdbcReader(database, "select synonyms from synonyms", false).getFingerprint());
+   }
+
    /**
     * Test for {@link SimpleJdbcReader#SimpleJdbcReader(DataSource, String, boolean)}.
     */
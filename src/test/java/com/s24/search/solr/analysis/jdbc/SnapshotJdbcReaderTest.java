@@ -0,0 +1,115 @@
+package com.s24.search.solr.analysis.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test for {@link SnapshotJdbcReader}.
+ */
+public class SnapshotJdbcReaderTest {
+   /**
+    * Directory for snapshots.
+    */
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * Embedded database.
+    */
+   private EmbeddedDatabase database;
+
+   @Before
+   public void setUp() throws Exception {
+      // Create H2 database instance
+      database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).build();
+
+      // Add synonym table with some content
+      JdbcTemplate template = new JdbcTemplate(database);
+      template.execute("create table synonyms(synonyms varchar(256))");
+      template.execute("insert into synonyms(synonyms) values('test1=>testA,testB')");
+      template.execute("insert into synonyms(synonyms) values('test2=>testC,testD')");
+   }
+
+   /**
+    * Test for {@link SnapshotJdbcReader#getReader()} and {@link SnapshotJdbcReader#getSnapshot()}.
+    */
+   @Test
+   public void getSnapshot() throws Exception {
+      SnapshotJdbcReader reader = new SnapshotJdbcReader(
+            new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0, "select count(*) from synonyms"),
+            folder.getRoot().toPath(), "dataSource");
+      assertNull(reader.getSnapshot());
+
+      // Loading from the database records the snapshot.
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD", read(reader));
+
+      JdbcReader snapshot = reader.getSnapshot();
+      assertNotNull(snapshot);
+      assertEquals(reader.getFingerprint(), snapshot.getFingerprint());
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD", read(snapshot));
+   }
+
+   /**
+    * Test for {@link SnapshotJdbcReader#getReader(String)}: Records the given fingerprint.
+    */
+   @Test
+   public void getReader_fingerprint() throws Exception {
+      SnapshotJdbcReader reader = new SnapshotJdbcReader(
+            new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0, "select count(*) from synonyms"),
+            folder.getRoot().toPath(), "dataSource");
+
+      try (Reader data = reader.getReader("fingerprint")) {
+         IOUtils.copy(data, new StringWriter());
+      }
+
+      assertEquals("fingerprint", reader.getSnapshot().getFingerprint());
+   }
+
+   /**
+    * Test for {@link SnapshotJdbcReader#getSnapshot()}: Snapshots of different data sources with the same SQL.
+    */
+   @Test
+   public void getSnapshot_dataSources() throws Exception {
+      SnapshotJdbcReader reader1 = new SnapshotJdbcReader(
+            new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0),
+            folder.getRoot().toPath(), "dataSource1");
+      SnapshotJdbcReader reader2 = new SnapshotJdbcReader(
+            new SimpleJdbcReader(database, "select synonyms from synonyms", false, 0),
+            folder.getRoot().toPath(), "dataSource2");
+
+      assertEquals("test1=>testA,testB\ntest2=>testC,testD", read(reader1));
+      assertNotNull(reader1.getSnapshot());
+      assertNull(reader2.getSnapshot());
+   }
+
+   /**
+    * Read all data of a reader.
+    */
+   private String read(JdbcReader reader) throws Exception {
+      try (Reader data = reader.getReader()) {
+         StringWriter result = new StringWriter();
+         IOUtils.copy(data, result);
+         return result.toString();
+      }
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      database.shutdown();
+   }
+}